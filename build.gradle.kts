@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.kayak.xp"
@@ -18,6 +19,7 @@ dependencies {
 
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 
     implementation(platform("io.projectreactor:reactor-bom:2023.0.0"))
     implementation("io.projectreactor:reactor-core")
@@ -30,3 +32,41 @@ dependencies {
 tasks.test {
     useJUnitPlatform()
 }
+
+// AppCDS archive of the classes a merge of the bundled inputs loads, for short merge jobs where startup dominates.
+// ./gradlew cdsArchive dumps it with one training merge, ./gradlew runCds --args='<inputFolder> <outputFolder>' starts
+// from it. CDS only archives classes loaded from jars, so both run from the jar instead of build/classes, and the
+// archive is only used with that exact classpath.
+val cdsArchiveFile = layout.buildDirectory.file("cds/merge.jsa")
+val cdsClasspath = files(tasks.jar, configurations.runtimeClasspath)
+
+val cdsArchive = tasks.register<JavaExec>("cdsArchive") {
+    group = "application"
+    description = "Dumps an AppCDS archive of the main merge path"
+    classpath = cdsClasspath
+    mainClass.set("Main")
+    inputs.files(cdsClasspath)
+    outputs.file(cdsArchiveFile)
+    jvmArgs("-XX:ArchiveClassesAtExit=${cdsArchiveFile.get().asFile}")
+    doFirst {
+        cdsArchiveFile.get().asFile.parentFile.mkdirs()
+    }
+}
+
+tasks.register<JavaExec>("runCds") {
+    group = "application"
+    description = "Runs Main from the AppCDS archive"
+    dependsOn(cdsArchive)
+    classpath = cdsClasspath
+    mainClass.set("Main")
+    jvmArgs("-XX:SharedArchiveFile=${cdsArchiveFile.get().asFile}", "-Xshare:auto")
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    // gc.alloc.rate.norm is reported per benchmark op, which is one full decode/merge: divide by the ID count
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    // e.g. ./gradlew jmh -Pjmh.includes=MergeBenchmark
+    project.findProperty("jmh.includes")?.let { includes.add(it.toString()) }
+}
@@ -0,0 +1,29 @@
+package generator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generated input folders for the benchmarks, cached in the temp directory so forks and reruns share them
+ */
+public final class Datasets {
+    private static final String COMPLETE_MARKER = ".complete";
+
+    private Datasets() {
+    }
+
+    /**
+     * @param count number of IDs in the dataset
+     * @return a folder holding main.json, poc.json, equipment.json and materials.json for count IDs
+     */
+    public static synchronized Path ensure(int count) throws Exception {
+        Path folder = Path.of(System.getProperty("java.io.tmpdir"), "rx-bench", Integer.toString(count));
+        if (!Files.exists(folder.resolve(COMPLETE_MARKER))) {
+            Files.createDirectories(folder);
+            //throws on a failed write, so a truncated dataset is never marked complete and gets regenerated next time
+            new Generator(folder.toFile(), count).writeToFolder();
+            Files.createFile(folder.resolve(COMPLETE_MARKER));
+        }
+        return folder;
+    }
+}
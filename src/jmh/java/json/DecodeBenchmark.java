@@ -0,0 +1,68 @@
+package json;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import generator.Datasets;
+import models.HeavyEquipment;
+import models.MergedRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode throughput of each input type, one op being a full read of the file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DecodeBenchmark {
+    private static final TypeReference<MergedRecord> MERGED_RECORD_TYPEREF = new TypeReference<>() {};
+    private static final TypeReference<EnumSet<HeavyEquipment>> EQUIPMENT_TYPEREF = new TypeReference<>() {};
+    private static final TypeReference<Map.Entry<Integer, String>> MATERIAL_ENTRY_TYPEREF = new TypeReference<>() {};
+
+    @Param({"10000", "1000000", "10000000"})
+    public int ids;
+
+    private Path folder;
+    private JSONDecoder decoder;
+
+    @Setup
+    public void setup() throws Exception {
+        folder = Datasets.ensure(ids);
+        decoder = new JSONDecoder();
+    }
+
+    @Benchmark
+    public long main() {
+        return decoder.createFluxReader(folder.resolve("main.json"), MERGED_RECORD_TYPEREF).count().block();
+    }
+
+    @Benchmark
+    public long contacts() {
+        return decoder.createKeyedFluxReader(folder.resolve("poc.json"), MergedRecord.PointOfContact.class)
+                .count().block();
+    }
+
+    @Benchmark
+    public long equipment() {
+        return decoder.createKeyedFluxReader(folder.resolve("equipment.json"), EQUIPMENT_TYPEREF).count().block();
+    }
+
+    @Benchmark
+    public long materials() {
+        return decoder.createKeyedFluxReader(folder.resolve("materials.json"), String.class).count().block();
+    }
+
+    /**
+     * Baseline: materials through MappingIterator and a Map.Entry TypeReference
+     */
+    @Benchmark
+    public long materialsMappingIterator() {
+        return decoder.createFluxReader(folder.resolve("materials.json"), MATERIAL_ENTRY_TYPEREF).count().block();
+    }
+}
@@ -0,0 +1,103 @@
+package json;
+
+import merger.FluxZipOnKey;
+import models.KeyedEntry;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and merging many sharded sources, with the readers on the bounded elastic pool, platform threads or
+ * virtual threads. One op reads {@link #IDS} keys spread round robin over the shards and merges them with zipOnKey.
+ * <p>
+ * The gc profiler reports allocations, and {@link Threads#peakPlatformThreads} how many platform threads were alive at
+ * once, which is what per-source threads cost in stacks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ReaderThreadsBenchmark {
+    private static final int IDS = 1 << 18;
+    private static final String[] MATERIALS = {"Wood", "Glass", "Vinyl", "Brass", "Stone"};
+
+    @Param({"4", "64", "512"})
+    public int sources;
+
+    @Param({"BOUNDED_ELASTIC", "PLATFORM", "VIRTUAL"})
+    public ReaderThreads threads;
+
+    @Param({"false", "true"})
+    public boolean readAhead;
+
+    private List<Path> shards;
+    private JSONDecoder decoder;
+
+    @Setup
+    public void setup() throws Exception {
+        Path folder = Files.createTempDirectory("rx-shards");
+        List<StringBuilder> contents = new ArrayList<>(sources);
+        for (int i = 0; i < sources; i++) {
+            contents.add(new StringBuilder("["));
+        }
+        for (int id = 0; id < IDS; id++) {
+            StringBuilder shard = contents.get(id % sources);
+            if (shard.length() > 1) {
+                shard.append(',');
+            }
+            shard.append("{\"").append(id).append("\":\"").append(MATERIALS[id % MATERIALS.length]).append("\"}");
+        }
+        shards = new ArrayList<>(sources);
+        for (int i = 0; i < sources; i++) {
+            Path shard = folder.resolve("shard-%03d.json".formatted(i));
+            Files.writeString(shard, contents.get(i).append(']'), StandardCharsets.UTF_8);
+            shard.toFile().deleteOnExit();
+            shards.add(shard);
+        }
+        folder.toFile().deleteOnExit();
+        decoder = new JSONDecoder(readAhead ? ReadAhead.DEFAULT : null, threads);
+    }
+
+    @Benchmark
+    public long merge(Threads threadCount) {
+        List<Flux<KeyedEntry<String>>> readers = new ArrayList<>(shards.size());
+        for (Path shard : shards) {
+            readers.add(decoder.createKeyedFluxReader(shard, String.class));
+        }
+        return FluxZipOnKey.zipOnKey(readers, KeyedEntry::key, () -> new int[1], (count, entry) -> {
+                    count[0]++;
+                    return count;
+                })
+                .count()
+                .block();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Threads {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+        //virtual threads aren't counted by the ThreadMXBean
+        public long peakPlatformThreads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            THREADS.resetPeakThreadCount();
+        }
+
+        @TearDown(Level.Iteration)
+        public void record() {
+            peakPlatformThreads = THREADS.getPeakThreadCount();
+        }
+    }
+}
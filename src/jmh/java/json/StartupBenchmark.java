@@ -0,0 +1,52 @@
+package json;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import merger.Merger;
+import models.HeavyEquipment;
+import models.MergedRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to the first merged record of the bundled inputs in a fresh JVM: every fork measures a single cold op, from
+ * creating the decoder to the first record out of the merge, so class loading and databind introspection are counted.
+ * <p>
+ * {@code modelDeserializers} toggles the hand-written {@link ModelDeserializers}, and {@link #firstRecordCds} runs with
+ * an AppCDS archive that the first of its forks dumps at exit and later forks start from.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class StartupBenchmark {
+    private static final TypeReference<MergedRecord> MERGED_RECORD_TYPEREF = new TypeReference<>() {};
+    private static final TypeReference<EnumSet<HeavyEquipment>> EQUIPMENT_TYPEREF = new TypeReference<>() {};
+
+    @Param({"true", "false"})
+    public boolean modelDeserializers;
+
+    @Benchmark
+    public MergedRecord firstRecord() {
+        return merge();
+    }
+
+    @Benchmark
+    @Fork(value = 10, jvmArgsAppend = {"-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=build/jmh-startup.jsa"})
+    public MergedRecord firstRecordCds() {
+        return merge();
+    }
+
+    private MergedRecord merge() {
+        JSONDecoder decoder = new JSONDecoder(ReadAhead.DEFAULT, ReaderThreads.PLATFORM, modelDeserializers);
+        return new Merger(decoder.createFluxReader("/input/main.json", MERGED_RECORD_TYPEREF),
+                decoder.createKeyedFluxReader("/input/equipment.json", EQUIPMENT_TYPEREF),
+                decoder.createKeyedFluxReader("/input/materials.json", String.class),
+                decoder.createKeyedFluxReader("/input/poc.json", MergedRecord.PointOfContact.class))
+                .run()
+                .blockFirst();
+    }
+}
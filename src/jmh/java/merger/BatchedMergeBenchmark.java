@@ -0,0 +1,120 @@
+package merger;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import generator.Datasets;
+import json.JSONDecoder;
+import models.HeavyEquipment;
+import models.KeyedEntry;
+import models.MergedRecord;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records per second of the per-element {@link Merger} against the {@link BatchedMerger} at several chunk sizes, with
+ * chunkSize 0 running the per-element path. {@code inMemory} merges prebuilt sources, so only the signalling and merge
+ * costs are measured; {@code decoded} reads the generated JSON inputs, with the batches filled by the decoders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BatchedMergeBenchmark.RECORDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BatchedMergeBenchmark {
+    static final int RECORDS = 100_000;
+    private static final TypeReference<MergedRecord> MERGED_RECORD_TYPEREF = new TypeReference<>() {};
+    private static final TypeReference<EnumSet<HeavyEquipment>> EQUIPMENT_TYPEREF = new TypeReference<>() {};
+
+    @Param({"0", "256", "1024", "4096"})
+    public int chunkSize;
+
+    private List<MergedRecord> records;
+    private List<KeyedEntry<MergedRecord.PointOfContact>> contacts;
+    private List<KeyedEntry<EnumSet<HeavyEquipment>>> equipment;
+    private List<KeyedEntry<String>> materials;
+    private Path folder;
+    private JSONDecoder decoder;
+
+    @Setup
+    public void setup() throws Exception {
+        SplittableRandom random = new SplittableRandom(42);
+        HeavyEquipment[] allEquipment = HeavyEquipment.values();
+        records = new ArrayList<>(RECORDS);
+        contacts = new ArrayList<>(RECORDS);
+        equipment = new ArrayList<>(RECORDS);
+        materials = new ArrayList<>();
+        for (int i = 0; i < RECORDS; i++) {
+            int id = 1000 + i;
+            records.add(new MergedRecord(id, "site-" + i, "address-" + i, null, null, null));
+            contacts.add(new KeyedEntry<>(id, new MergedRecord.PointOfContact("name-" + i,
+                    MergeBenchmark.TITLES[random.nextInt(MergeBenchmark.TITLES.length)], "555-" + i)));
+            EnumSet<HeavyEquipment> set = EnumSet.noneOf(HeavyEquipment.class);
+            for (int j = random.nextInt(1, 6); j > 0; j--) {
+                set.add(allEquipment[random.nextInt(allEquipment.length)]);
+            }
+            equipment.add(new KeyedEntry<>(id, set));
+            for (int j = random.nextInt(1, 7); j > 0; j--) {
+                String material = MergeBenchmark.MATERIALS[random.nextInt(MergeBenchmark.MATERIALS.length)];
+                materials.add(new KeyedEntry<>(id, material));
+            }
+        }
+        folder = Datasets.ensure(RECORDS);
+        decoder = new JSONDecoder();
+    }
+
+    @Benchmark
+    public long inMemory() {
+        if (chunkSize == 0) {
+            return new Merger(Flux.fromIterable(records), Flux.fromIterable(equipment), Flux.fromIterable(materials),
+                    Flux.fromIterable(contacts))
+                    .run()
+                    .count()
+                    .block();
+        }
+        return count(new BatchedMerger(batches(records), batches(equipment), batches(materials), batches(contacts)));
+    }
+
+    @Benchmark
+    public long decoded() {
+        if (chunkSize == 0) {
+            return new Merger(decoder.createFluxReader(folder.resolve("main.json"), MERGED_RECORD_TYPEREF),
+                    decoder.createKeyedFluxReader(folder.resolve("equipment.json"), EQUIPMENT_TYPEREF),
+                    decoder.createKeyedFluxReader(folder.resolve("materials.json"), String.class),
+                    decoder.createKeyedFluxReader(folder.resolve("poc.json"), MergedRecord.PointOfContact.class))
+                    .run()
+                    .count()
+                    .block();
+        }
+        return count(new BatchedMerger(
+                decoder.createBatchReader(folder.resolve("main.json"), MERGED_RECORD_TYPEREF, chunkSize),
+                decoder.createKeyedBatchReader(folder.resolve("equipment.json"), EQUIPMENT_TYPEREF, chunkSize),
+                decoder.createKeyedBatchReader(folder.resolve("materials.json"), String.class, chunkSize),
+                decoder.createKeyedBatchReader(folder.resolve("poc.json"), MergedRecord.PointOfContact.class,
+                        chunkSize)));
+    }
+
+    private long count(BatchedMerger merger) {
+        return merger.run(chunkSize)
+                .reduce(0L, (count, chunk) -> count + chunk.size())
+                .block();
+    }
+
+    /**
+     * Slices a source into batches of chunkSize, like the decoders' batch readers
+     */
+    private <T> Flux<List<T>> batches(List<T> source) {
+        List<List<T>> batches = new ArrayList<>();
+        for (int from = 0; from < source.size(); from += chunkSize) {
+            batches.add(source.subList(from, Math.min(source.size(), from + chunkSize)));
+        }
+        return Flux.fromIterable(batches);
+    }
+}
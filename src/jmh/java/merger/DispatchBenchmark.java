@@ -0,0 +1,71 @@
+package merger;
+
+import models.KeyedEntry;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-source call sites in zipOnKey. {@code shared} binds 4 sources to one key extractor and one
+ * accumulator, so every call site only ever sees one receiver. {@code mergePlan} registers them the way {@link Merger}
+ * does, with a distinct extractor and setter per source. Each gets its own {@link SourceApplier} class, so only the
+ * drain loop's call into the appliers sees 4 receivers, the setters behind it stay monomorphic. The folded work is the
+ * same, a sum of the values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(DispatchBenchmark.KEYS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DispatchBenchmark {
+    static final int KEYS = 1 << 20;
+
+    private List<List<KeyedEntry<Long>>> sources;
+
+    @Setup
+    public void setup() {
+        sources = new ArrayList<>(4);
+        for (int s = 0; s < 4; s++) {
+            List<KeyedEntry<Long>> source = new ArrayList<>(KEYS);
+            for (int key = 0; key < KEYS; key++) {
+                source.add(new KeyedEntry<>(key, (long) key * (s + 1)));
+            }
+            sources.add(source);
+        }
+    }
+
+    @Benchmark
+    public long shared() {
+        List<Flux<KeyedEntry<Long>>> fluxes = new ArrayList<>(4);
+        for (List<KeyedEntry<Long>> source : sources) {
+            fluxes.add(Flux.fromIterable(source));
+        }
+        return FluxZipOnKey.zipOnKey(fluxes, KeyedEntry::key, () -> new long[1], (sum, entry) -> {
+                    sum[0] += entry.value();
+                    return sum;
+                })
+                .reduce(0L, (total, sum) -> total + sum[0])
+                .block();
+    }
+
+    @Benchmark
+    public long mergePlan() {
+        return MergePlan.into(() -> new long[1])
+                .source(Flux.fromIterable(sources.get(0)), KeyedEntry::key,
+                        (long[] sum, KeyedEntry<Long> entry) -> sum[0] += entry.value())
+                .source(Flux.fromIterable(sources.get(1)), KeyedEntry::key,
+                        (long[] sum, KeyedEntry<Long> entry) -> sum[0] += entry.value())
+                .source(Flux.fromIterable(sources.get(2)), KeyedEntry::key,
+                        (long[] sum, KeyedEntry<Long> entry) -> sum[0] += entry.value())
+                .source(Flux.fromIterable(sources.get(3)), KeyedEntry::key,
+                        (long[] sum, KeyedEntry<Long> entry) -> sum[0] += entry.value())
+                .merge()
+                .reduce(0L, (total, sum) -> total + sum[0])
+                .block();
+    }
+}
@@ -0,0 +1,64 @@
+package merger;
+
+import models.KeyedEntry;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning the rows of the materials source into one count map per ID, per ID
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MaterialsBenchmark {
+    private static final int GROUPS = 16384;
+
+    @Param({"1", "6", "32"})
+    public int materialsPerKey;
+
+    private List<KeyedEntry<String>> rows;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        rows = new ArrayList<>(GROUPS * materialsPerKey);
+        for (int i = 0; i < GROUPS; i++) {
+            for (int j = 0; j < materialsPerKey; j++) {
+                //fresh strings, like the decoder hands out
+                rows.add(new KeyedEntry<>(1000 + i,
+                        new String(MergeBenchmark.MATERIALS[random.nextInt(MergeBenchmark.MATERIALS.length)])));
+            }
+        }
+    }
+
+    /**
+     * Baseline: windowUntilChanged + collectList + groupingBy
+     */
+    @Benchmark
+    @OperationsPerInvocation(GROUPS)
+    public long windowCollectList() {
+        return Flux.fromIterable(rows)
+                .windowUntilChanged(Map.Entry::getKey)
+                .flatMapSequential(Flux::collectList)
+                .map(MergeBenchmark::convertMaterials)
+                .count()
+                .block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUPS)
+    public long aggregate() {
+        return MaterialsAggregator.aggregate(Flux.fromIterable(rows))
+                .count()
+                .block();
+    }
+}
@@ -0,0 +1,118 @@
+package merger;
+
+import models.HeavyEquipment;
+import models.KeyedEntry;
+import models.MergedRecord;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static merger.MergeMarker.MERGE_MARKER_COMPARATOR;
+
+/**
+ * Merge cost on in-memory sources, so decoding doesn't get in the way. One op is a full merge of {@code keys} IDs,
+ * with {@code sparsity} being the share of IDs missing from the equipment and materials sources.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MergeBenchmark {
+    static final String[] MATERIALS = {"Wood", "Glass", "Brass", "Stone", "Rubber", "Vinyl", "Plexiglass", "Aluminum",
+            "Steel", "Granite", "Plastic", "Concrete"};
+    static final String[] TITLES = {"Engineer", "Supervisor", "Architect", "Project Manager", "Construction Worker"};
+
+    @Param({"10000", "1000000"})
+    public int keys;
+
+    @Param({"0.0", "0.5", "0.9"})
+    public double sparsity;
+
+    private List<MergedRecord> records;
+    private List<KeyedEntry<MergedRecord.PointOfContact>> contacts;
+    private List<KeyedEntry<EnumSet<HeavyEquipment>>> equipment;
+    private List<KeyedEntry<String>> materials;
+    private List<Object> markerInputs;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        HeavyEquipment[] allEquipment = HeavyEquipment.values();
+        records = new ArrayList<>(keys);
+        contacts = new ArrayList<>(keys);
+        equipment = new ArrayList<>();
+        materials = new ArrayList<>();
+        for (int i = 0; i < keys; i++) {
+            int id = 1000 + i;
+            records.add(new MergedRecord(id, "site-" + i, "address-" + i, null, null, null));
+            contacts.add(new KeyedEntry<>(id, new MergedRecord.PointOfContact("name-" + i,
+                    TITLES[random.nextInt(TITLES.length)], "555-" + i)));
+            if (random.nextDouble() >= sparsity) {
+                EnumSet<HeavyEquipment> set = EnumSet.noneOf(HeavyEquipment.class);
+                for (int j = random.nextInt(1, 6); j > 0; j--) {
+                    set.add(allEquipment[random.nextInt(allEquipment.length)]);
+                }
+                equipment.add(new KeyedEntry<>(id, set));
+            }
+            if (random.nextDouble() >= sparsity) {
+                for (int j = random.nextInt(1, 7); j > 0; j--) {
+                    materials.add(new KeyedEntry<>(id, MATERIALS[random.nextInt(MATERIALS.length)]));
+                }
+            }
+        }
+        markerInputs = new ArrayList<>();
+        markerInputs.addAll(records.subList(0, Math.min(keys, 10_000)));
+        markerInputs.addAll(contacts.subList(0, Math.min(keys, 10_000)));
+        markerInputs.addAll(equipment.subList(0, Math.min(equipment.size(), 10_000)));
+        markerInputs.add(Map.entry(1000, Map.of("Wood", 1L)));
+    }
+
+    private Merger merger() {
+        return new Merger(Flux.fromIterable(records), Flux.fromIterable(equipment), Flux.fromIterable(materials),
+                Flux.fromIterable(contacts));
+    }
+
+    @Benchmark
+    public long zipOnKey() {
+        return merger().run().count().block();
+    }
+
+    /**
+     * Baseline: the original mergeComparing + windowUntilChanged + reduce pipeline
+     */
+    @Benchmark
+    public long mergeComparingWindow() {
+        Flux<MergeMarker<?>> recordMarkers = Flux.fromIterable(records).map(MergeMarker::getMergeMarker);
+        Flux<MergeMarker<?>> contactMarkers = Flux.fromIterable(contacts).map(MergeMarker::getMergeMarker);
+        Flux<MergeMarker<?>> equipmentMarkers = Flux.fromIterable(equipment).map(MergeMarker::getMergeMarker);
+        Flux<MergeMarker<?>> materialMarkers = Flux.fromIterable(materials)
+                .windowUntilChanged(Map.Entry::getKey)
+                .flatMapSequential(Flux::collectList)
+                .map(MergeBenchmark::convertMaterials)
+                .map(MergeMarker::getMergeMarker);
+        return Flux.mergeComparing(MERGE_MARKER_COMPARATOR, recordMarkers, contactMarkers, equipmentMarkers, materialMarkers)
+                .windowUntilChanged(MergeMarker::getKey)
+                .flatMapSequential(keyed -> keyed.reduce(MergedRecord.builder(), MergeMarker::accumulate))
+                .map(MergedRecord.Builder::build)
+                .count()
+                .block();
+    }
+
+    static Map.Entry<Integer, Map<String, Long>> convertMaterials(List<? extends Map.Entry<Integer, String>> materials) {
+        return Map.entry(materials.stream().findFirst().get().getKey(), materials.stream()
+                .collect(Collectors.groupingBy(Map.Entry::getValue, Collectors.counting())));
+    }
+
+    @Benchmark
+    public void getMergeMarker(Blackhole blackhole) {
+        for (Object input : markerInputs) {
+            blackhole.consume(MergeMarker.getMergeMarker(input));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package merger;
+
+import models.KeyedEntry;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-element merge cost as the number of sources grows. One op merges {@link #KEYS} keys, each present in a random
+ * quarter of the sources.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SourceCountBenchmark {
+    private static final int KEYS = 100_000;
+    private static final Comparator<KeyedEntry<Integer>> BY_KEY = Comparator.comparingInt(KeyedEntry::key);
+
+    @Param({"4", "16", "64"})
+    public int sources;
+
+    private List<List<KeyedEntry<Integer>>> inputs;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        inputs = new ArrayList<>(sources);
+        for (int i = 0; i < sources; i++) {
+            inputs.add(new ArrayList<>());
+        }
+        for (int key = 0; key < KEYS; key++) {
+            for (int i = 0; i < sources; i++) {
+                if (random.nextInt(4) == 0) {
+                    inputs.get(i).add(new KeyedEntry<>(key, i));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public long zipOnKey() {
+        MergePlan<long[]> plan = MergePlan.into(() -> new long[1]);
+        List<Flux<KeyedEntry<Integer>>> fluxes = new ArrayList<>(sources);
+        for (List<KeyedEntry<Integer>> input : inputs) {
+            fluxes.add(Flux.fromIterable(input));
+        }
+        return plan.sources(fluxes, KeyedEntry::key, (sum, entry) -> sum[0] += entry.value())
+                .merge()
+                .count()
+                .block();
+    }
+
+    /**
+     * Baseline: the ordered merge scans the head of every source per element, and keys still need grouping after
+     */
+    @Benchmark
+    public long mergeComparing() {
+        List<Flux<KeyedEntry<Integer>>> fluxes = new ArrayList<>(sources);
+        for (List<KeyedEntry<Integer>> input : inputs) {
+            fluxes.add(Flux.fromIterable(input));
+        }
+        @SuppressWarnings("unchecked")
+        Flux<KeyedEntry<Integer>>[] array = fluxes.toArray(new Flux[0]);
+        return Flux.mergeComparing(BY_KEY, array)
+                .windowUntilChanged(KeyedEntry::key)
+                .concatMap(window -> window.reduce(0L, (sum, entry) -> sum + entry.value()))
+                .count()
+                .block();
+    }
+}
@@ -0,0 +1,49 @@
+package models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of assembling one merged record through the builder, the way the merge does it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BuilderBenchmark {
+    private MergedRecord record;
+    private MergedRecord.PointOfContact contact;
+    private EnumSet<HeavyEquipment> equipment;
+    private Map<String, Long> materials;
+    private MergedRecord merged;
+
+    @Setup
+    public void setup() {
+        record = new MergedRecord(1500, "Leffler-Sanford", "040 Kieth Junctions, New Elaina, AL 13007",
+                null, null, null);
+        contact = new MergedRecord.PointOfContact("Lewis Lindgren II", "Construction Worker", "688-995-1284");
+        equipment = EnumSet.of(HeavyEquipment.Excavator, HeavyEquipment.SkidSteer, HeavyEquipment.Dragline);
+        materials = Map.of("Wood", 2L, "Glass", 1L, "Vinyl", 1L);
+        merged = new MergedRecord(1500, record.siteName(), record.address(), contact, materials, equipment);
+    }
+
+    @Benchmark
+    public MergedRecord applyAndBuild() {
+        return MergedRecord.builder()
+                .apply(record.mutate())
+                .setPointOfContact(contact)
+                .setRequiredEquipment(equipment)
+                .setRequiredMaterials(materials)
+                .build();
+    }
+
+    @Benchmark
+    public MergedRecord mutateAndBuild() {
+        return merged.mutate().build();
+    }
+}
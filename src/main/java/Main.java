@@ -1,28 +1,119 @@
+import binary.BinaryFiles;
+import binary.Codecs;
+import binary.ExternalSort;
 import com.fasterxml.jackson.core.type.TypeReference;
 import json.JSONDecoder;
+import json.ReadAhead;
+import json.ReaderThreads;
+import merger.BatchedMerger;
+import merger.IndexedMerger;
 import merger.Merger;
+import metrics.LocalMetricsRegistry;
+import metrics.Metrics;
 import models.HeavyEquipment;
 import models.MergedRecord;
+import reactor.core.publisher.Flux;
+import sink.RecordSink;
+import sink.SinkStats;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.EnumSet;
-import java.util.Map;
+import java.util.logging.Logger;
 
 public class Main {
     private static final TypeReference<MergedRecord> mergedRecordTypeReference = new TypeReference<>(){};
-    private static final TypeReference<Map.Entry<Integer, EnumSet<HeavyEquipment>>> EQUIPMENT_STREAM_TYPEREF = new TypeReference<>() {};
-    private static final TypeReference<Map.Entry<Integer, String>> mapIntStr = new TypeReference<>() {};
-    private static final TypeReference<Map.Entry<Integer, MergedRecord.PointOfContact>> mapIntContact = new TypeReference<>(){};
-    public static void main(String[] args) {
-        JSONDecoder decoder = new JSONDecoder();
-        var mergedRecordFlux = decoder.createFluxReader("/input/main.json", mergedRecordTypeReference);
-        var equipmentFlux = decoder.createFluxReader("/input/equipment.json", EQUIPMENT_STREAM_TYPEREF);
-        var materialsFlux = decoder.createFluxReader("/input/materials.json", mapIntStr);
-        var contactFlux = decoder.createFluxReader("/input/poc.json", mapIntContact);
+    private static final TypeReference<EnumSet<HeavyEquipment>> EQUIPMENT_TYPEREF = new TypeReference<>() {};
+    public static void main(String[] args) throws IOException {
+        //-Drx.metrics=true reports decode and merge metrics at the end
+        LocalMetricsRegistry metrics = Boolean.getBoolean("rx.metrics") ? new LocalMetricsRegistry() : null;
+        if (metrics != null) {
+            Metrics.use(metrics);
+        }
+        //-Drx.readerThreads=VIRTUAL reads every source on its own virtual thread
+        ReaderThreads readerThreads = ReaderThreads.valueOf(System.getProperty("rx.readerThreads", "PLATFORM"));
+        JSONDecoder decoder = new JSONDecoder(ReadAhead.DEFAULT, readerThreads);
+        Merger merger;
+        if (args.length > 0 && Files.exists(Path.of(args[0], "main.bin"))) {
+            //inputs converted to the binary format by binary.Converter
+            Path folder = Path.of(args[0]);
+            merger = new Merger(BinaryFiles.read(folder.resolve("main.bin"), Codecs.MERGED_RECORD),
+                    BinaryFiles.read(folder.resolve("equipment.bin"), Codecs.EQUIPMENT_SET),
+                    BinaryFiles.read(folder.resolve("materials.bin"), Codecs.MATERIAL),
+                    BinaryFiles.read(folder.resolve("poc.bin"), Codecs.CONTACT));
+        } else if (args.length > 0) {
+            //read the inputs from a folder on disk instead of the bundled resources
+            Path folder = Path.of(args[0]);
+            merger = new Merger(decoder.createFluxReader(folder.resolve("main.json"), mergedRecordTypeReference),
+                    decoder.createKeyedFluxReader(folder.resolve("equipment.json"), EQUIPMENT_TYPEREF),
+                    decoder.createKeyedFluxReader(folder.resolve("materials.json"), String.class),
+                    decoder.createKeyedFluxReader(folder.resolve("poc.json"), MergedRecord.PointOfContact.class));
+        } else {
+            var mergedRecordFlux = decoder.createFluxReader("/input/main.json", mergedRecordTypeReference);
+            var equipmentFlux = decoder.createKeyedFluxReader("/input/equipment.json", EQUIPMENT_TYPEREF);
+            var materialsFlux = decoder.createKeyedFluxReader("/input/materials.json", String.class);
+            var contactFlux = decoder.createKeyedFluxReader("/input/poc.json", MergedRecord.PointOfContact.class);
+            merger = new Merger(mergedRecordFlux, equipmentFlux, materialsFlux, contactFlux);
+        }
 
-        Merger merger = new Merger(mergedRecordFlux, equipmentFlux, materialsFlux, contactFlux);
+        //-Drx.batchSize=1024 decodes and merges the JSON inputs in batches instead of one record at a time
+        int batchSize = Integer.getInteger("rx.batchSize", 0);
+        //-Drx.partitions=8 merges 8 key ranges of a JSON input folder in parallel, each seeking into the inputs
+        int partitions = Integer.getInteger("rx.partitions", 0);
+        if (Boolean.getBoolean("rx.sortInputs")) {
+            //the batched and partitioned merges read the inputs themselves, and would silently skip the sort
+            if (partitions > 0 || batchSize > 0) {
+                throw new IllegalArgumentException(
+                        "rx.sortInputs can't be combined with rx.partitions or rx.batchSize");
+            }
+            //inputs that are only partially ordered get sorted with spills to the temp folder
+            merger = merger.sorted(Path.of(System.getProperty("java.io.tmpdir")), ExternalSort.DEFAULT_RUN_SIZE);
+        }
 
-        merger.run()
-                .log("main")
-                .blockLast();
+        Flux<MergedRecord> merged;
+        if (partitions > 0) {
+            if (args.length == 0 || Files.exists(Path.of(args[0], "main.bin"))) {
+                throw new IllegalArgumentException("rx.partitions requires a folder of sorted JSON inputs");
+            }
+            merged = IndexedMerger.open(decoder, Path.of(args[0])).partition(partitions).run();
+        } else if (batchSize > 0) {
+            merged = batchedMerger(decoder, args, batchSize).runFlattened(batchSize);
+        } else {
+            //-Drx.lookupJoin=true loads the contacts and equipment into lookup tables, so they don't need to be sorted
+            merged = Boolean.getBoolean("rx.lookupJoin") ? merger.runWithLookups() : merger.run();
+        }
+        if (args.length > 1) {
+            //write the merged records out instead of logging them
+            SinkStats stats = new RecordSink(Path.of(args[1]), "merged")
+                    .write(merged)
+                    .block();
+            Logger.getLogger("Main").info(() -> String.valueOf(stats));
+        } else {
+            merged.log("main")
+                    .blockLast();
+        }
+
+        decoder.getReadAheadStats()
+                .forEach(stats -> Logger.getLogger("Main").info(stats::toString));
+        if (metrics != null) {
+            Logger.getLogger("Main").info(metrics::report);
+        }
+    }
+
+    private static BatchedMerger batchedMerger(JSONDecoder decoder, String[] args, int batchSize) {
+        if (args.length > 0) {
+            Path folder = Path.of(args[0]);
+            return new BatchedMerger(
+                    decoder.createBatchReader(folder.resolve("main.json"), mergedRecordTypeReference, batchSize),
+                    decoder.createKeyedBatchReader(folder.resolve("equipment.json"), EQUIPMENT_TYPEREF, batchSize),
+                    decoder.createKeyedBatchReader(folder.resolve("materials.json"), String.class, batchSize),
+                    decoder.createKeyedBatchReader(folder.resolve("poc.json"), MergedRecord.PointOfContact.class,
+                            batchSize));
+        }
+        return new BatchedMerger(decoder.createBatchReader("/input/main.json", mergedRecordTypeReference, batchSize),
+                decoder.createKeyedBatchReader("/input/equipment.json", EQUIPMENT_TYPEREF, batchSize),
+                decoder.createKeyedBatchReader("/input/materials.json", String.class, batchSize),
+                decoder.createKeyedBatchReader("/input/poc.json", MergedRecord.PointOfContact.class, batchSize));
     }
 }
@@ -0,0 +1,21 @@
+package binary;
+
+import java.io.IOException;
+
+/**
+ * Encodes the value column of a keyed binary file. Keys are stored in their own delta-encoded column by
+ * {@link BinaryFiles}, so codecs only deal with what's left of each element.
+ * @param <V> the element type
+ */
+public interface BinaryCodec<V> {
+    /**
+     * @return identifier written in the file header, to catch reading a file with the wrong codec
+     */
+    int id();
+
+    int keyOf(V value);
+
+    void write(BinaryOutput out, V value) throws IOException;
+
+    V read(BinaryInput in, int key) throws IOException;
+}
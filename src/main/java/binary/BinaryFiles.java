@@ -0,0 +1,198 @@
+package binary;
+
+import json.MappedInputStream;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads and writes keyed binary files.
+ * <p>
+ * A file is a header followed by blocks of up to {@code blockSize} elements. Each block stores its keys as one
+ * zigzag delta-encoded varint column, followed by the values encoded by the {@link BinaryCodec}. Dictionaries
+ * (material names, contact titles) are shared by all blocks of a file. A block count of 0 ends the file.
+ * @author vibbix
+ */
+public final class BinaryFiles {
+    private static final int MAGIC = 0x52584249; //RXBI
+    private static final int VERSION = 1;
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    private BinaryFiles() {
+    }
+
+    public static <V> Mono<Long> write(Flux<? extends V> source, Path file, BinaryCodec<V> codec) {
+        return write(source, file, codec, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Sinks a flux sorted by key into a binary file
+     * @param source elements to write
+     * @param file file to create or overwrite
+     * @param codec codec of the elements
+     * @param blockSize number of elements per block
+     * @return the number of elements written, once the file is complete and closed. Failing to flush or close the
+     * file fails the write; if the write already failed, close failures are added to its error as suppressed.
+     */
+    public static <V> Mono<Long> write(Flux<? extends V> source, Path file, BinaryCodec<V> codec, int blockSize) {
+        return Mono.usingWhen(Mono.fromCallable(() -> new BlockWriter<>(file, codec)),
+                writer -> source.buffer(blockSize)
+                        .publishOn(Schedulers.boundedElastic(), 2)
+                        .<Void>handle((block, sink) -> {
+                            try {
+                                writer.writeBlock(block);
+                            } catch (IOException e) {
+                                sink.error(e);
+                            }
+                        })
+                        .then(Mono.fromCallable(writer::finish)),
+                //finish already closed the file
+                writer -> Mono.empty(),
+                (writer, failure) -> Mono.fromRunnable(() -> writer.close(failure)),
+                writer -> Mono.fromRunnable(writer::closeQuietly));
+    }
+
+    /**
+     * @param file binary file to read
+     * @param codec codec the file was written with
+     * @return the elements of the file, in file order
+     */
+    public static <V> Flux<V> read(Path file, BinaryCodec<V> codec) {
+        return Flux.<V, BlockReader<V>>generate(() -> new BlockReader<>(file, codec),
+                        BlockReader::next,
+                        BlockReader::closeQuietly)
+                .subscribeOn(Schedulers.boundedElastic(), true);
+    }
+
+    private static final class BlockWriter<V> {
+        private final BinaryOutput out;
+        private final BinaryCodec<V> codec;
+        private long count;
+
+        BlockWriter(Path file, BinaryCodec<V> codec) throws IOException {
+            this.out = new BinaryOutput(Files.newOutputStream(file), Codecs.DICTIONARIES);
+            this.codec = codec;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeVarInt(codec.id());
+        }
+
+        void writeBlock(List<? extends V> block) throws IOException {
+            if (block.isEmpty()) {
+                return;
+            }
+            out.writeVarInt(block.size());
+            int previous = 0;
+            for (V value : block) {
+                int key = codec.keyOf(value);
+                out.writeSignedVarInt(key - previous);
+                previous = key;
+            }
+            for (V value : block) {
+                codec.write(out, value);
+            }
+            count += block.size();
+        }
+
+        /**
+         * Ends and closes the file, a file that can't be flushed or closed may be incomplete
+         */
+        long finish() throws IOException {
+            out.writeVarInt(0);
+            out.close();
+            return count;
+        }
+
+        /**
+         * Closes the file after the write failed, keeping a close failure along with the original one
+         */
+        void close(Throwable failure) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+
+        /**
+         * Closes the file after a cancel, when there's no one left to report a failure to
+         */
+        void closeQuietly() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                Logger.getLogger("BinaryFiles").log(Level.WARNING, e, () -> "Failed to close writer");
+            }
+        }
+    }
+
+    private static final class BlockReader<V> {
+        private final BinaryInput in;
+        private final BinaryCodec<V> codec;
+        private int[] keys = new int[DEFAULT_BLOCK_SIZE];
+        private int size;
+        private int index;
+
+        BlockReader(Path file, BinaryCodec<V> codec) throws IOException {
+            this.in = new BinaryInput(MappedInputStream.open(file), Codecs.DICTIONARIES);
+            this.codec = codec;
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                in.close();
+                throw new IOException("Not a binary merge file: " + file);
+            }
+            int codecId = in.readVarInt();
+            if (codecId != codec.id()) {
+                in.close();
+                throw new IOException("%s was written with codec %d, not %d".formatted(file, codecId, codec.id()));
+            }
+        }
+
+        BlockReader<V> next(SynchronousSink<V> sink) {
+            try {
+                if (index == size && !readBlock()) {
+                    sink.complete();
+                    return this;
+                }
+                sink.next(codec.read(in, keys[index++]));
+            } catch (IOException | UncheckedIOException e) {
+                sink.error(e);
+            }
+            return this;
+        }
+
+        private boolean readBlock() throws IOException {
+            int count = in.readVarInt();
+            if (count == 0) {
+                return false;
+            }
+            if (count > keys.length) {
+                keys = new int[count];
+            }
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += in.readSignedVarInt();
+                keys[i] = previous;
+            }
+            size = count;
+            index = 0;
+            return true;
+        }
+
+        void closeQuietly() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                Logger.getLogger("BinaryFiles").log(Level.WARNING, e, () -> "Failed to close reader");
+            }
+        }
+    }
+}
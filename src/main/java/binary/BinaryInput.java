@@ -0,0 +1,97 @@
+package binary;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Low level reader for the binary format, the mirror image of {@link BinaryOutput}
+ */
+public final class BinaryInput implements Closeable {
+    private final InputStream in;
+    private final List<String>[] dictionaries;
+
+    @SuppressWarnings("unchecked")
+    public BinaryInput(InputStream in, int dictionaryCount) {
+        this.in = new BufferedInputStream(in, 1 << 16);
+        this.dictionaries = new List[dictionaryCount];
+        for (int i = 0; i < dictionaryCount; i++) {
+            this.dictionaries[i] = new ArrayList<>();
+        }
+    }
+
+    public int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    public int readInt() throws IOException {
+        return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    public long readLong() throws IOException {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    public int readShort() throws IOException {
+        return (readByte() << 8) | readByte();
+    }
+
+    public long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    public int readSignedVarInt() throws IOException {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public String readString() throws IOException {
+        int length = readVarInt();
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public String readDictionaryString(int dictionary) throws IOException {
+        List<String> dict = dictionaries[dictionary];
+        int code = readVarInt();
+        if (code == 0) {
+            String value = readString();
+            dict.add(value);
+            return value;
+        }
+        if (code > dict.size()) {
+            throw new IOException("Unknown dictionary code " + code);
+        }
+        //dictionary strings are shared, so every record holding "Wood" points at the same instance
+        return dict.get(code - 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
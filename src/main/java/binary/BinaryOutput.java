@@ -0,0 +1,109 @@
+package binary;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Low level writer for the binary format: varints, length-prefixed UTF-8 strings, and dictionary-encoded strings.
+ * <p>
+ * Dictionaries are built up while writing: the first time a string is written to a dictionary it's written out in
+ * full, and every later occurrence is written as its varint code.
+ */
+public final class BinaryOutput implements Closeable {
+    private final OutputStream out;
+    private final Map<String, Integer>[] dictionaries;
+    private long bytesWritten;
+
+    @SuppressWarnings("unchecked")
+    public BinaryOutput(OutputStream out, int dictionaryCount) {
+        this.out = new BufferedOutputStream(out, 1 << 16);
+        this.dictionaries = new Map[dictionaryCount];
+        for (int i = 0; i < dictionaryCount; i++) {
+            this.dictionaries[i] = new HashMap<>();
+        }
+    }
+
+    public void writeByte(int value) throws IOException {
+        out.write(value);
+        bytesWritten++;
+    }
+
+    public void writeInt(int value) throws IOException {
+        writeByte(value >>> 24);
+        writeByte(value >>> 16);
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    public void writeShort(int value) throws IOException {
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint
+     */
+    public void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    public void writeVarInt(int value) throws IOException {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes a zigzag encoded varint, so small negative values stay small
+     */
+    public void writeSignedVarInt(int value) throws IOException {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    public void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+        bytesWritten += bytes.length;
+    }
+
+    /**
+     * Writes a string through a dictionary: 0 followed by the string the first time, its code + 1 afterward
+     */
+    public void writeDictionaryString(int dictionary, String value) throws IOException {
+        Map<String, Integer> dict = dictionaries[dictionary];
+        Integer code = dict.get(value);
+        if (code != null) {
+            writeVarInt(code + 1);
+        } else {
+            dict.put(value, dict.size());
+            writeVarInt(0);
+            writeString(value);
+        }
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
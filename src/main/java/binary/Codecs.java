@@ -0,0 +1,201 @@
+package binary;
+
+import models.EquipmentSet;
+import models.HashedRecord;
+import models.HeavyEquipment;
+import models.KeyedEntry;
+import models.MergedRecord;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Codecs for the merged records and the keyed side inputs
+ */
+public final class Codecs {
+    static final int DICTIONARIES = 2;
+    static final int TITLE_DICTIONARY = 0;
+    static final int MATERIAL_DICTIONARY = 1;
+
+    private static final int HAS_CONTACT = 1;
+    private static final int HAS_MATERIALS = 1 << 1;
+    private static final int HAS_EQUIPMENT = 1 << 2;
+
+    private Codecs() {
+    }
+
+    public static final BinaryCodec<MergedRecord> MERGED_RECORD = new BinaryCodec<>() {
+        @Override
+        public int id() {
+            return 1;
+        }
+
+        @Override
+        public int keyOf(MergedRecord value) {
+            return value.id();
+        }
+
+        @Override
+        public void write(BinaryOutput out, MergedRecord value) throws IOException {
+            int flags = (value.contact() != null ? HAS_CONTACT : 0)
+                    | (value.requiredMaterials() != null ? HAS_MATERIALS : 0)
+                    | (value.requiredEquipment() != null ? HAS_EQUIPMENT : 0);
+            out.writeByte(flags);
+            out.writeString(value.siteName());
+            out.writeString(value.address());
+            if (value.contact() != null) {
+                writeContact(out, value.contact());
+            }
+            if (value.requiredMaterials() != null) {
+                writeMaterials(out, value.requiredMaterials());
+            }
+            if (value.requiredEquipment() != null) {
+                out.writeShort(equipmentMask(value.requiredEquipment()));
+            }
+        }
+
+        @Override
+        public MergedRecord read(BinaryInput in, int key) throws IOException {
+            int flags = in.readByte();
+            String siteName = in.readString();
+            String address = in.readString();
+            MergedRecord.PointOfContact contact = (flags & HAS_CONTACT) != 0 ? readContact(in) : null;
+            Map<String, Long> materials = (flags & HAS_MATERIALS) != 0 ? readMaterials(in) : null;
+            Collection<HeavyEquipment> equipment = (flags & HAS_EQUIPMENT) != 0 ? EquipmentSet.ofMask(in.readShort()) : null;
+            return new MergedRecord(key, siteName, address, contact, materials, equipment);
+        }
+    };
+
+    public static final BinaryCodec<KeyedEntry<MergedRecord.PointOfContact>> CONTACT = new BinaryCodec<>() {
+        @Override
+        public int id() {
+            return 2;
+        }
+
+        @Override
+        public int keyOf(KeyedEntry<MergedRecord.PointOfContact> value) {
+            return value.key();
+        }
+
+        @Override
+        public void write(BinaryOutput out, KeyedEntry<MergedRecord.PointOfContact> value) throws IOException {
+            writeContact(out, value.value());
+        }
+
+        @Override
+        public KeyedEntry<MergedRecord.PointOfContact> read(BinaryInput in, int key) throws IOException {
+            return new KeyedEntry<>(key, readContact(in));
+        }
+    };
+
+    /**
+     * Equipment entries, read back as the shared {@link EquipmentSet} of their mask
+     */
+    public static final BinaryCodec<KeyedEntry<? extends Set<HeavyEquipment>>> EQUIPMENT_SET = new BinaryCodec<>() {
+        @Override
+        public int id() {
+            return 3;
+        }
+
+        @Override
+        public int keyOf(KeyedEntry<? extends Set<HeavyEquipment>> value) {
+            return value.key();
+        }
+
+        @Override
+        public void write(BinaryOutput out, KeyedEntry<? extends Set<HeavyEquipment>> value) throws IOException {
+            out.writeShort(equipmentMask(value.value()));
+        }
+
+        @Override
+        public KeyedEntry<? extends Set<HeavyEquipment>> read(BinaryInput in, int key) throws IOException {
+            return new KeyedEntry<>(key, EquipmentSet.ofMask(in.readShort()));
+        }
+    };
+
+    public static final BinaryCodec<KeyedEntry<String>> MATERIAL = new BinaryCodec<>() {
+        @Override
+        public int id() {
+            return 4;
+        }
+
+        @Override
+        public int keyOf(KeyedEntry<String> value) {
+            return value.key();
+        }
+
+        @Override
+        public void write(BinaryOutput out, KeyedEntry<String> value) throws IOException {
+            out.writeDictionaryString(MATERIAL_DICTIONARY, value.value());
+        }
+
+        @Override
+        public KeyedEntry<String> read(BinaryInput in, int key) throws IOException {
+            return new KeyedEntry<>(key, in.readDictionaryString(MATERIAL_DICTIONARY));
+        }
+    };
+
+    /**
+     * Merged records along with their content hash, for the state of {@code merger.IncrementalMerger}
+     */
+    public static final BinaryCodec<HashedRecord> HASHED_RECORD = new BinaryCodec<>() {
+        @Override
+        public int id() {
+            return 5;
+        }
+
+        @Override
+        public int keyOf(HashedRecord value) {
+            return value.id();
+        }
+
+        @Override
+        public void write(BinaryOutput out, HashedRecord value) throws IOException {
+            out.writeLong(value.contentHash());
+            MERGED_RECORD.write(out, value.record());
+        }
+
+        @Override
+        public HashedRecord read(BinaryInput in, int key) throws IOException {
+            long contentHash = in.readLong();
+            return new HashedRecord(MERGED_RECORD.read(in, key), contentHash);
+        }
+    };
+
+    private static void writeContact(BinaryOutput out, MergedRecord.PointOfContact contact) throws IOException {
+        out.writeString(contact.name());
+        out.writeDictionaryString(TITLE_DICTIONARY, contact.title());
+        out.writeString(contact.phoneNumber());
+    }
+
+    private static MergedRecord.PointOfContact readContact(BinaryInput in) throws IOException {
+        String name = in.readString();
+        String title = in.readDictionaryString(TITLE_DICTIONARY);
+        String phoneNumber = in.readString();
+        return new MergedRecord.PointOfContact(name, title, phoneNumber);
+    }
+
+    private static void writeMaterials(BinaryOutput out, Map<String, Long> materials) throws IOException {
+        out.writeVarInt(materials.size());
+        for (Map.Entry<String, Long> material : materials.entrySet()) {
+            out.writeDictionaryString(MATERIAL_DICTIONARY, material.getKey());
+            out.writeVarLong(material.getValue());
+        }
+    }
+
+    private static Map<String, Long> readMaterials(BinaryInput in) throws IOException {
+        int size = in.readVarInt();
+        if (size == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> materials = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            materials.put(in.readDictionaryString(MATERIAL_DICTIONARY), in.readVarLong());
+        }
+        return Collections.unmodifiableMap(materials);
+    }
+
+    static int equipmentMask(Collection<HeavyEquipment> equipment) {
+        return EquipmentSet.maskOf(equipment);
+    }
+}
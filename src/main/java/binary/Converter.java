@@ -0,0 +1,40 @@
+package binary;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import json.JSONDecoder;
+import models.HeavyEquipment;
+import models.MergedRecord;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.logging.Logger;
+
+/**
+ * Converts a folder of JSON inputs ({@code main.json, poc.json, equipment.json, materials.json}) into their binary
+ * counterparts ({@code main.bin, ...}), so repeated merges don't have to parse JSON again.
+ */
+public class Converter {
+    private static final TypeReference<MergedRecord> MERGED_RECORD_TYPEREF = new TypeReference<>() {};
+    private static final TypeReference<EnumSet<HeavyEquipment>> EQUIPMENT_TYPEREF = new TypeReference<>() {};
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: Converter <json folder> [binary folder]");
+        }
+        Path input = Path.of(args[0]);
+        Path output = args.length > 1 ? Path.of(args[1]) : input;
+        JSONDecoder decoder = new JSONDecoder();
+        Logger logger = Logger.getLogger("Converter");
+
+        long records = BinaryFiles.write(decoder.createFluxReader(input.resolve("main.json"), MERGED_RECORD_TYPEREF),
+                output.resolve("main.bin"), Codecs.MERGED_RECORD).block();
+        long contacts = BinaryFiles.write(decoder.createKeyedFluxReader(input.resolve("poc.json"), MergedRecord.PointOfContact.class),
+                output.resolve("poc.bin"), Codecs.CONTACT).block();
+        long equipment = BinaryFiles.write(decoder.createKeyedFluxReader(input.resolve("equipment.json"), EQUIPMENT_TYPEREF),
+                output.resolve("equipment.bin"), Codecs.EQUIPMENT_SET).block();
+        long materials = BinaryFiles.write(decoder.createKeyedFluxReader(input.resolve("materials.json"), String.class),
+                output.resolve("materials.bin"), Codecs.MATERIAL).block();
+        logger.info(() -> "Converted %d records, %d contacts, %d equipment sets, %d materials into %s"
+                .formatted(records, contacts, equipment, materials, output));
+    }
+}
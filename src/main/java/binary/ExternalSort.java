@@ -0,0 +1,128 @@
+package binary;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded memory external merge sort by key.
+ * <p>
+ * The source is cut into runs of {@code runSize} elements, each sorted in memory and spilled to a temporary binary
+ * file, then all runs are merged back with {@link Flux#mergeComparing}. The last run never needs to be spilled, so an
+ * input that fits in one run is sorted entirely in memory. At most about 3 runs are held in memory at once: the one
+ * being buffered, the one waiting to be spilled, and the one being written.
+ * <p>
+ * The sort is stable: elements with the same key keep their source order. Temporary files are deleted when the
+ * sorted flux terminates or is cancelled.
+ * @author vibbix
+ */
+public final class ExternalSort {
+    public static final int DEFAULT_RUN_SIZE = 1 << 20;
+    private static final int MERGE_PREFETCH = 256;
+
+    private ExternalSort() {
+    }
+
+    public static <V> Flux<V> sort(Flux<? extends V> source, BinaryCodec<V> codec, Path tempRoot) {
+        return sort(source, codec, DEFAULT_RUN_SIZE, tempRoot);
+    }
+
+    /**
+     * @param source elements to sort
+     * @param codec codec used for the spill files, and to read the key of each element
+     * @param runSize number of elements sorted in memory per run
+     * @param tempRoot folder to create the temporary spill folder in
+     * @return the elements of source, sorted by key
+     */
+    public static <V> Flux<V> sort(Flux<? extends V> source, BinaryCodec<V> codec, int runSize, Path tempRoot) {
+        if (runSize <= 0) {
+            throw new IllegalArgumentException("runSize > 0 required but it was " + runSize);
+        }
+        Comparator<V> byKey = Comparator.comparingInt(codec::keyOf);
+        return Flux.usingWhen(Mono.fromCallable(() -> new Runs<>(tempRoot, codec, byKey)),
+                runs -> source.buffer(runSize)
+                        .concatMap(runs::add, 0)
+                        .thenMany(Flux.defer(runs::merge)),
+                Runs::delete);
+    }
+
+    /**
+     * Runs of one subscription
+     */
+    private static final class Runs<V> {
+        private final Path folder;
+        private final BinaryCodec<V> codec;
+        private final Comparator<V> byKey;
+        private final List<Path> files = new ArrayList<>();
+        private List<V> pending;
+        private long count;
+
+        Runs(Path tempRoot, BinaryCodec<V> codec, Comparator<V> byKey) throws IOException {
+            Files.createDirectories(tempRoot);
+            this.folder = Files.createTempDirectory(tempRoot, "rx-sort");
+            this.codec = codec;
+            this.byKey = byKey;
+        }
+
+        /**
+         * Sorts the run and holds on to it, spilling the run held before
+         */
+        @SuppressWarnings("unchecked")
+        Mono<Long> add(List<? extends V> run) {
+            List<V> sorted = (List<V>) run;
+            sorted.sort(byKey);
+            count += sorted.size();
+            List<V> previous = pending;
+            pending = sorted;
+            if (previous == null) {
+                return Mono.empty();
+            }
+            Path file = folder.resolve("run-%05d.bin".formatted(files.size()));
+            files.add(file);
+            return BinaryFiles.write(Flux.fromIterable(previous), file, codec);
+        }
+
+        @SuppressWarnings("unchecked")
+        Flux<V> merge() {
+            List<Publisher<? extends V>> sources = new ArrayList<>(files.size() + 1);
+            for (Path file : files) {
+                sources.add(BinaryFiles.read(file, codec));
+            }
+            if (pending != null) {
+                sources.add(Flux.fromIterable(pending));
+            }
+            Logger.getLogger("ExternalSort").fine(() -> "Merging %d elements from %d spilled runs"
+                    .formatted(count, files.size()));
+            if (sources.size() == 1) {
+                return Flux.from(sources.get(0));
+            }
+            //on equal keys mergeComparing takes the earliest source, which keeps the sort stable
+            return Flux.mergeComparing(MERGE_PREFETCH, byKey, sources.toArray(Publisher[]::new));
+        }
+
+        Mono<Void> delete() {
+            return Mono.<Void>fromRunnable(() -> {
+                        pending = null;
+                        try {
+                            for (Path file : files) {
+                                Files.deleteIfExists(file);
+                            }
+                            Files.deleteIfExists(folder);
+                        } catch (IOException e) {
+                            Logger.getLogger("ExternalSort").log(Level.WARNING, e, () -> "Failed to delete " + folder);
+                        }
+                    })
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package cache;
+
+/**
+ * Snapshot of a {@link MergedRecordCache}
+ * @param hits lookups served from the cache
+ * @param misses lookups that had to merge
+ * @param evictions entries evicted to stay under the weight limit
+ * @param evictedBytes estimated bytes of the evicted entries
+ * @param entries entries currently cached
+ * @param weightedBytes estimated bytes of the cached entries
+ */
+public record CacheStats(long hits, long misses, long evictions, long evictedBytes, long entries, long weightedBytes) {
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+}
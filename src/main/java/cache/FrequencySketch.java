@@ -0,0 +1,75 @@
+package cache;
+
+/**
+ * Count-min sketch of 4-bit counters estimating how often each int key was seen recently, the "TinyLFU" part of the
+ * cache.
+ * <p>
+ * Every key maps to 4 counters, one per hash, packed 16 to a long. Once {@code 10 * width} increments happened, every
+ * counter is halved, so old popularity fades out and the counters never saturate for long.
+ */
+final class FrequencySketch {
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int[] SEEDS = {0x97cb3127, 0x6c62272e, 0x2f7a4f3b, 0x5bd1e995};
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedEntries number of entries the cache is expected to hold
+     */
+    FrequencySketch(long expectedEntries) {
+        int width = (int) Math.min(1 << 30, Long.highestOneBit(Math.max(expectedEntries, 64) - 1) << 1);
+        this.table = new long[width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * @return the estimated recent frequency of the key, from 0 to 15
+     */
+    int frequency(int key) {
+        int frequency = Integer.MAX_VALUE;
+        for (int seed : SEEDS) {
+            int h = hash(key, seed);
+            frequency = Math.min(frequency, (int) ((table[h & mask] >>> nibble(h)) & 0xF));
+        }
+        return frequency;
+    }
+
+    void increment(int key) {
+        boolean added = false;
+        for (int seed : SEEDS) {
+            int h = hash(key, seed);
+            int index = h & mask;
+            int shift = nibble(h);
+            if (((table[index] >>> shift) & 0xF) != 0xF) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    /**
+     * The bit offset of the counter within its long, taken from the high bits the index doesn't use
+     */
+    private static int nibble(int h) {
+        return (h >>> 28) << 2;
+    }
+
+    private static int hash(int key, int seed) {
+        int h = (key ^ seed) * 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
+}
@@ -0,0 +1,196 @@
+package cache;
+
+import merger.IndexedMerger;
+import metrics.Counter;
+import metrics.Metrics;
+import models.MergedRecord;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Keeps recently merged records by ID, so hot IDs don't have to be merged again on every lookup.
+ * <p>
+ * The cache is bounded by the estimated size of the records in bytes, with W-TinyLFU eviction (see
+ * {@link WindowTinyLfu}). A miss falls back to the loader, typically an {@link IndexedMerger} merging just that ID, and
+ * concurrent misses on the same ID share one load.
+ * <p>
+ * Entries are invalidated when any of the source files is modified, checked at most once per {@code checkInterval},
+ * or explicitly, like for the changes of an incremental merge (see {@link #invalidating(Flux)}).
+ * <p>
+ * Hits, misses and evictions are counted as {@code cache.hits}, {@code cache.misses} and {@code cache.evictions}.
+ * @author vibbix
+ */
+public final class MergedRecordCache {
+    public static final Duration DEFAULT_CHECK_INTERVAL = Duration.ofSeconds(1);
+    //a record with a contact, a few materials and a shared equipment set
+    private static final int EXPECTED_RECORD_BYTES = 512;
+    private static final int RECORD_OVERHEAD = 96;
+    private static final int STRING_OVERHEAD = 40;
+    private static final int MATERIAL_OVERHEAD = 64;
+
+    private final WindowTinyLfu<MergedRecord> policy;
+    private final IntFunction<Mono<MergedRecord>> loader;
+    private final List<Path> sources;
+    private final long checkIntervalNanos;
+    private final Map<Integer, Mono<MergedRecord>> loading = new ConcurrentHashMap<>();
+    //bumped on every invalidation, so loads that started before it don't put stale records back
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Counter hitCounter = Metrics.registry().counter("cache.hits");
+    private final Counter missCounter = Metrics.registry().counter("cache.misses");
+    private final Counter evictionCounter = Metrics.registry().counter("cache.evictions");
+    private volatile FileTime[] modified;
+    private volatile long nextCheck;
+
+    public MergedRecordCache(long maxBytes, IndexedMerger merger) {
+        this(maxBytes, merger::get, merger.files(), DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * @param maxBytes maximum estimated size of the cached records
+     * @param loader merges the record of an ID on a miss, or completes empty if there's none
+     * @param sources files the records are merged from, invalidating the cache when modified
+     * @param checkInterval minimum time between two checks of the files' modification times
+     */
+    public MergedRecordCache(long maxBytes, IntFunction<Mono<MergedRecord>> loader, List<Path> sources,
+                             Duration checkInterval) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes > 0 required but it was " + maxBytes);
+        }
+        this.policy = new WindowTinyLfu<>(maxBytes, EXPECTED_RECORD_BYTES, MergedRecordCache::weigh);
+        this.loader = loader;
+        this.sources = List.copyOf(sources);
+        this.checkIntervalNanos = checkInterval.toNanos();
+        this.modified = lastModified();
+        this.nextCheck = System.nanoTime() + checkIntervalNanos;
+    }
+
+    /**
+     * @return the merged record of the ID, from the cache or merged on a miss, or empty if there's none
+     */
+    public Mono<MergedRecord> get(int id) {
+        return Mono.defer(() -> {
+            checkSources();
+            MergedRecord cached = policy.get(id);
+            if (cached != null) {
+                hits.increment();
+                hitCounter.increment();
+                return Mono.just(cached);
+            }
+            misses.increment();
+            missCounter.increment();
+            return loading.computeIfAbsent(id, this::load);
+        });
+    }
+
+    private Mono<MergedRecord> load(int id) {
+        long loadGeneration = generation.get();
+        return loader.apply(id)
+                .doOnNext(record -> put(id, record, loadGeneration))
+                .doFinally(signal -> loading.remove(id))
+                .cache();
+    }
+
+    private void put(int id, MergedRecord record, long loadGeneration) {
+        long evicted;
+        synchronized (policy) {
+            if (generation.get() != loadGeneration) {
+                return;
+            }
+            long evictionsBefore = policy.evictions();
+            policy.put(id, record);
+            evicted = policy.evictions() - evictionsBefore;
+        }
+        evictionCounter.add(evicted);
+    }
+
+    public void invalidate(int id) {
+        synchronized (policy) {
+            generation.incrementAndGet();
+            policy.remove(id);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (policy) {
+            generation.incrementAndGet();
+            policy.clear();
+        }
+    }
+
+    /**
+     * Invalidates the ID of every record passing through, typically the changes emitted by
+     * {@code merger.IncrementalMerger#run()}
+     * @param changes changed records
+     * @return the same records
+     */
+    public Flux<MergedRecord> invalidating(Flux<MergedRecord> changes) {
+        return changes.doOnNext(record -> invalidate(record.id()));
+    }
+
+    public CacheStats stats() {
+        synchronized (policy) {
+            return new CacheStats(hits.sum(), misses.sum(), policy.evictions(), policy.evictedWeight(), policy.size(),
+                    policy.weightedSize());
+        }
+    }
+
+    private void checkSources() {
+        long now = System.nanoTime();
+        if (now - nextCheck < 0) {
+            return;
+        }
+        nextCheck = now + checkIntervalNanos;
+        FileTime[] current = lastModified();
+        if (!Arrays.equals(current, modified)) {
+            modified = current;
+            invalidateAll();
+        }
+    }
+
+    private FileTime[] lastModified() {
+        FileTime[] times = new FileTime[sources.size()];
+        for (int i = 0; i < times.length; i++) {
+            try {
+                times[i] = Files.getLastModifiedTime(sources.get(i));
+            } catch (IOException e) {
+                //a missing file counts as modified once it's back
+                times[i] = FileTime.fromMillis(0);
+            }
+        }
+        return times;
+    }
+
+    /**
+     * Rough heap footprint of a record: strings at one byte per char, equipment sets are shared
+     */
+    static int weigh(MergedRecord record) {
+        int bytes = RECORD_OVERHEAD + weigh(record.siteName()) + weigh(record.address());
+        MergedRecord.PointOfContact contact = record.contact();
+        if (contact != null) {
+            bytes += RECORD_OVERHEAD + weigh(contact.name()) + weigh(contact.title()) + weigh(contact.phoneNumber());
+        }
+        if (record.requiredMaterials() != null) {
+            bytes += record.requiredMaterials().size() * MATERIAL_OVERHEAD;
+        }
+        return bytes;
+    }
+
+    private static int weigh(String value) {
+        return value == null ? 0 : STRING_OVERHEAD + value.length();
+    }
+}
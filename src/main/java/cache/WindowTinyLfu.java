@@ -0,0 +1,266 @@
+package cache;
+
+import reactor.util.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Weight bounded W-TinyLFU eviction policy over int keys.
+ * <p>
+ * New entries land in a small LRU window (1% of the weight). Entries pushed out of the window become candidates for
+ * the main space, a segmented LRU: a probation segment, and a protected segment (80% of the main weight) that entries
+ * get promoted to when they're hit again. When the cache is over its weight, a candidate is only admitted if the
+ * {@link FrequencySketch} has seen it more often than the probation victim, so one-off lookups can't flush out the hot
+ * entries.
+ * <p>
+ * Every method is synchronized, lookups are cheap compared to the merge a miss costs.
+ * @param <V> the cached values
+ */
+final class WindowTinyLfu<V> {
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final long maxWeight;
+    private final long windowMaxWeight;
+    private final long protectedMaxWeight;
+    private final ToIntFunction<? super V> weigher;
+    private final FrequencySketch sketch;
+    private final Map<Integer, Node<V>> nodes = new HashMap<>();
+    private final AccessOrder<V> window = new AccessOrder<>();
+    private final AccessOrder<V> probation = new AccessOrder<>();
+    private final AccessOrder<V> protectedSegment = new AccessOrder<>();
+    private long windowWeight;
+    private long mainWeight;
+    private long protectedWeight;
+    private long evictions;
+    private long evictedWeight;
+
+    /**
+     * @param maxWeight maximum total weight of the entries
+     * @param expectedWeight typical weight of an entry, used to size the sketch
+     * @param weigher weight of a value
+     */
+    WindowTinyLfu(long maxWeight, int expectedWeight, ToIntFunction<? super V> weigher) {
+        this.maxWeight = maxWeight;
+        this.windowMaxWeight = Math.max(1, maxWeight / 100);
+        this.protectedMaxWeight = (maxWeight - windowMaxWeight) * 80 / 100;
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(maxWeight / Math.max(1, expectedWeight));
+    }
+
+    /**
+     * Looks up a key and records the access, hit or miss
+     */
+    @Nullable
+    synchronized V get(int key) {
+        sketch.increment(key);
+        Node<V> node = nodes.get(key);
+        if (node == null) {
+            return null;
+        }
+        onAccess(node);
+        return node.value;
+    }
+
+    /**
+     * @return false if the value weighs more than the whole cache, and wasn't cached
+     */
+    synchronized boolean put(int key, V value) {
+        int weight = weigher.applyAsInt(value);
+        if (weight > maxWeight) {
+            remove(key);
+            return false;
+        }
+        Node<V> node = nodes.get(key);
+        if (node != null) {
+            addWeight(node, weight - node.weight);
+            node.value = value;
+            node.weight = weight;
+            onAccess(node);
+        } else {
+            node = new Node<>(key, value, weight);
+            nodes.put(key, node);
+            window.addLast(node);
+            windowWeight += weight;
+        }
+        evict();
+        return true;
+    }
+
+    synchronized void remove(int key) {
+        Node<V> node = nodes.remove(key);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    synchronized void clear() {
+        nodes.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+        windowWeight = 0;
+        mainWeight = 0;
+        protectedWeight = 0;
+    }
+
+    synchronized int size() {
+        return nodes.size();
+    }
+
+    synchronized long weightedSize() {
+        return windowWeight + mainWeight;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    synchronized long evictedWeight() {
+        return evictedWeight;
+    }
+
+    private void onAccess(Node<V> node) {
+        switch (node.queue) {
+            case WINDOW -> window.moveToLast(node);
+            case PROBATION -> {
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedSegment.addLast(node);
+                protectedWeight += node.weight;
+                //demote the least recently used protected entries back to probation
+                while (protectedWeight > protectedMaxWeight) {
+                    Node<V> demoted = protectedSegment.first();
+                    protectedSegment.remove(demoted);
+                    protectedWeight -= demoted.weight;
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+            default -> protectedSegment.moveToLast(node);
+        }
+    }
+
+    private void evict() {
+        //entries pushed out of the window are the candidates to admit, the probation head is the victim
+        Node<V> candidate = null;
+        while (windowWeight > windowMaxWeight) {
+            Node<V> node = window.first();
+            window.remove(node);
+            windowWeight -= node.weight;
+            node.queue = PROBATION;
+            probation.addLast(node);
+            mainWeight += node.weight;
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+        while (windowWeight + mainWeight > maxWeight) {
+            Node<V> victim = probation.first();
+            if (victim == null) {
+                victim = protectedSegment.first() != null ? protectedSegment.first() : window.first();
+            } else if (candidate != null && candidate != victim) {
+                if (sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                    victim = candidate;
+                }
+            }
+            if (victim == candidate) {
+                //the candidates are at the tail of probation, so the next one follows it
+                candidate = candidate.next;
+            }
+            nodes.remove(victim.key);
+            unlink(victim);
+            evictions++;
+            evictedWeight += victim.weight;
+        }
+    }
+
+    private void addWeight(Node<V> node, long delta) {
+        switch (node.queue) {
+            case WINDOW -> windowWeight += delta;
+            case PROTECTED -> {
+                protectedWeight += delta;
+                mainWeight += delta;
+            }
+            default -> mainWeight += delta;
+        }
+    }
+
+    private void unlink(Node<V> node) {
+        addWeight(node, -node.weight);
+        switch (node.queue) {
+            case WINDOW -> window.remove(node);
+            case PROBATION -> probation.remove(node);
+            default -> protectedSegment.remove(node);
+        }
+    }
+
+    private static final class Node<V> {
+        final int key;
+        V value;
+        int weight;
+        byte queue = WINDOW;
+        Node<V> prev;
+        Node<V> next;
+
+        Node(int key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list, least recently used first
+     */
+    private static final class AccessOrder<V> {
+        private Node<V> head;
+        private Node<V> tail;
+
+        @Nullable
+        Node<V> first() {
+            return head;
+        }
+
+        void addLast(Node<V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void remove(Node<V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToLast(Node<V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+        }
+    }
+}
@@ -1,117 +1,348 @@
 package generator;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
 import com.github.javafaker.Faker;
 import com.github.javafaker.service.FakeValuesService;
 import com.github.javafaker.service.RandomService;
-import models.MergedRecord;
+import models.HeavyEquipment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Writes the 4 input files (main, poc, materials, equipment) for a range of IDs.
+ * <p>
+ * Output is deterministic for a given set of {@link Options}: Faker is only used up front to fill value pools from the
+ * seed, and each chunk of {@link #CHUNK_SIZE} IDs draws from its own {@link SplittableRandom} seeded by the chunk
+ * index. Chunks are generated in parallel and appended in key order, so the thread count doesn't change the output.
+ */
 public class Generator {
+    /**
+     * Generator [folder] [count] [seed] [sparsity] [maxMaterialsPerKey] [UNIFORM|GEOMETRIC] [JSON|PRETTY_JSON]
+     */
     public static void main(String[] args) throws Exception {
         String fPath;
-        if (args.length > 1) {
+        if (args.length > 0) {
             fPath = args[0];
         } else {
             fPath = Files.createTempDirectory("rx-gen")
                     .toString();
         }
-        var gen = new Generator(new File(fPath));
+        Options defaults = Options.defaults(DEFAULT_COUNT);
+        var options = new Options(
+                args.length > 1 ? Integer.parseInt(args[1]) : defaults.count(),
+                defaults.firstId(),
+                args.length > 2 ? Long.parseLong(args[2]) : defaults.seed(),
+                args.length > 3 ? Double.parseDouble(args[3]) : defaults.sparsity(),
+                args.length > 4 ? Integer.parseInt(args[4]) : defaults.maxMaterialsPerKey(),
+                args.length > 5 ? Distribution.valueOf(args[5]) : defaults.materialsDistribution(),
+                args.length > 6 ? Format.valueOf(args[6]) : defaults.format());
+        var gen = new Generator(new File(fPath), options);
         gen.writeToFolder();
     }
 
-    private final Faker faker;
-    private final Random random;
+    public static final int FIRST_ID = 1000;
+    public static final int DEFAULT_COUNT = 1000;
+    public static final long DEFAULT_SEED = 0x5EED;
+    static final int CHUNK_SIZE = 1 << 16;
+    private static final int POOL_SIZE = 4096;
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+    //golden ratio increment, spreads consecutive chunk indexes over the seed space
+    private static final long CHUNK_SEED_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final String[] FILES = {"main.json", "poc.json", "materials.json", "equipment.json"};
+    private static final HeavyEquipment[] EQUIPMENT = HeavyEquipment.values();
+
+    /**
+     * How many materials an ID that has materials gets
+     */
+    public enum Distribution {
+        /**
+         * Uniform between 1 and the maximum
+         */
+        UNIFORM,
+        /**
+         * Halving odds for each extra material, a few IDs get many
+         */
+        GEOMETRIC
+    }
+
+    public enum Format {
+        JSON,
+        PRETTY_JSON
+    }
+
+    /**
+     * @param count number of IDs to generate
+     * @param firstId first ID, the IDs are consecutive from here
+     * @param seed seed for everything random, the same seed gives the same files
+     * @param sparsity share of IDs without materials, and separately without equipment, from 0 to 1
+     * @param maxMaterialsPerKey most materials an ID can have
+     * @param materialsDistribution how material counts are spread between 1 and the maximum
+     * @param format output format
+     */
+    public record Options(int count, int firstId, long seed, double sparsity, int maxMaterialsPerKey,
+                          Distribution materialsDistribution, Format format) {
+        public Options {
+            if (count < 0) {
+                throw new IllegalArgumentException("count >= 0 required but it was " + count);
+            }
+            if (sparsity < 0 || sparsity > 1) {
+                throw new IllegalArgumentException("sparsity in [0, 1] required but it was " + sparsity);
+            }
+            if (maxMaterialsPerKey <= 0) {
+                throw new IllegalArgumentException("maxMaterialsPerKey > 0 required but it was " + maxMaterialsPerKey);
+            }
+            if ((long) firstId + count - 1 > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("IDs from %d overflow an int at count %d".formatted(firstId, count));
+            }
+            Objects.requireNonNull(materialsDistribution);
+            Objects.requireNonNull(format);
+        }
+
+        /**
+         * Compact JSON roughly matching the bundled inputs: 1 in 7 IDs without materials or equipment, up to 6 each
+         */
+        public static Options defaults(int count) {
+            return new Options(count, FIRST_ID, DEFAULT_SEED, 1.0 / 7, 6, Distribution.UNIFORM, Format.JSON);
+        }
+    }
+
     private final File targetFolder;
-    private final ObjectMapper mapper;
-    private final RandomService randomService;
-    private final FakeValuesService fakeValuesService;
+    private final Options options;
+    private final JsonFactory factory;
 
     public Generator(File targetFolder) throws Exception {
-        this.random = new Random();
-        this.faker = new Faker(random);
-        this.targetFolder = targetFolder;
-        this.mapper = new ObjectMapper();
-        this.randomService = new RandomService(random);
-        this.fakeValuesService = new FakeValuesService(Locale.ENGLISH, randomService);
+        this(targetFolder, DEFAULT_COUNT);
     }
 
+    /**
+     * @param targetFolder folder to write the 4 input files to
+     * @param count number of IDs to generate, starting at {@link #FIRST_ID}
+     */
+    public Generator(File targetFolder, int count) throws Exception {
+        this(targetFolder, Options.defaults(count));
+    }
 
-    public void writeToFolder() {
-        ObjectWriter writer = mapper.writer().withDefaultPrettyPrinter();
+    public Generator(File targetFolder, Options options) {
+        this.targetFolder = targetFolder;
+        this.options = options;
+        this.factory = new JsonFactory();
+    }
 
-        //buffered writers
+    /**
+     * Writes the 4 files, or fails: a file that couldn't be written completely is never reported as generated
+     * @throws IOException if a file couldn't be written or closed, in which case the folder holds truncated files
+     */
+    public void writeToFolder() throws IOException {
+        long start = System.nanoTime();
         Path targetPath = Path.of(targetFolder.toString());
-        try(SequenceWriter mainWriter = writer.writeValues(targetPath.resolve("main.json").toFile());
-            SequenceWriter pocWriter = writer.writeValues(targetPath.resolve("poc.json").toFile());
-            SequenceWriter materialsWriter = writer.writeValues(targetPath.resolve("materials.json").toFile());
-            SequenceWriter equipmentWriter = writer.writeValues(targetPath.resolve("equipment.json").toFile())) {
-            //init
-            mainWriter.init(true);
-            pocWriter.init(true);
-            materialsWriter.init(true);
-            equipmentWriter.init(true);
-            //build up
-            for (int id = 1000; id < 2000; id++) {
-                //generate point of contact
-                String siteName = faker.company().name();
-                String address = faker.address().fullAddress();
-                mainWriter.write(new MergedRecord(id, siteName, address,
-                        null, null, null));
-                pocWriter.write(Map.entry(id, pointOfContact()));
-                generateRequiredMaterials(materialsWriter, id);
-                generateRequiredEquipment(equipmentWriter, id);
+        Pools pools = Pools.of(options.seed());
+        int chunks = (int) ((options.count() + (long) CHUNK_SIZE - 1) / CHUNK_SIZE);
+        boolean pretty = options.format() == Format.PRETTY_JSON;
+        byte[] separator = (pretty ? ", " : ",").getBytes(StandardCharsets.US_ASCII);
+
+        OutputStream[] outputs = new OutputStream[FILES.length];
+        try {
+            for (int i = 0; i < FILES.length; i++) {
+                outputs[i] = new BufferedOutputStream(Files.newOutputStream(targetPath.resolve(FILES[i])), OUTPUT_BUFFER_SIZE);
+                outputs[i].write((pretty ? "[ " : "[").getBytes(StandardCharsets.US_ASCII));
+            }
+            boolean[] empty = new boolean[FILES.length];
+            Arrays.fill(empty, true);
+            //generated on all cores, handed back in chunk order; at most one chunk per core is held in memory
+            Iterable<byte[][]> generated = Flux.range(0, chunks)
+                    .flatMapSequential(chunk -> Mono.fromCallable(() -> generateChunk(pools, chunk))
+                            .subscribeOn(Schedulers.parallel()), Schedulers.DEFAULT_POOL_SIZE, 1)
+                    .toIterable(1);
+            for (byte[][] chunk : generated) {
+                for (int i = 0; i < FILES.length; i++) {
+                    if (chunk[i].length == 0) {
+                        continue;
+                    }
+                    if (!empty[i]) {
+                        outputs[i].write(separator);
+                    }
+                    outputs[i].write(chunk[i]);
+                    empty[i] = false;
+                }
+            }
+            for (int i = 0; i < FILES.length; i++) {
+                outputs[i].write((pretty && !empty[i] ? " ]" : "]").getBytes(StandardCharsets.US_ASCII));
             }
-        } catch (IOException e) {
-            Logger.getLogger("Generator").log(Level.WARNING, e, () -> "Failed to write");
+        } catch (IOException | RuntimeException e) {
+            close(outputs, e);
+            throw e;
         }
+        //closing flushes the buffered tail of every file, so it can fail the write as well
+        close(outputs, null);
+        Logger.getLogger("Generator").info(() -> "Generated %d IDs in %s in %d ms".formatted(options.count(),
+                targetPath, (System.nanoTime() - start) / 1_000_000));
     }
 
-    private MergedRecord.PointOfContact pointOfContact() {
-        return new MergedRecord.PointOfContact(faker.name().name(),
-                fakeValuesService.fetchString("construction.roles"),
-                faker.phoneNumber().cellPhone());
-    }
-    private void generateRequiredEquipment(SequenceWriter writer, int id) throws IOException {
-        Collection<String> equip = generateRequiredEquipment();
-        if (!equip.isEmpty()) {
-            writer.write(Map.entry(id, equip));
+    /**
+     * Closes every output, even when some fail to
+     * @param failure the exception the write already failed with, which any close failure is added to as suppressed
+     * @throws IOException the first close failure, when the write itself didn't fail
+     */
+    private static void close(OutputStream[] outputs, Throwable failure) throws IOException {
+        IOException closeFailure = null;
+        for (OutputStream output : outputs) {
+            if (output == null) {
+                continue;
+            }
+            try {
+                output.close();
+            } catch (IOException e) {
+                if (failure != null) {
+                    failure.addSuppressed(e);
+                } else if (closeFailure == null) {
+                    closeFailure = e;
+                } else {
+                    closeFailure.addSuppressed(e);
+                }
+            }
+        }
+        if (closeFailure != null) {
+            throw closeFailure;
         }
     }
 
-    private void generateRequiredMaterials(SequenceWriter writer, int id) throws IOException {
-        var materials = generateRequiredMaterials();
-        for (String material: materials) {
-            writer.write(Map.entry(id, material));
+    /**
+     * @return the elements of each file for the IDs of this chunk, comma separated and without the enclosing array
+     */
+    private byte[][] generateChunk(Pools pools, int chunk) throws IOException {
+        SplittableRandom random = new SplittableRandom(options.seed() + chunk * CHUNK_SEED_GAMMA);
+        int from = (int) (options.firstId() + (long) chunk * CHUNK_SIZE);
+        int to = (int) Math.min((long) from + CHUNK_SIZE, (long) options.firstId() + options.count());
+        ByteArrayOutputStream[] buffers = new ByteArrayOutputStream[FILES.length];
+        for (int i = 0; i < FILES.length; i++) {
+            buffers[i] = new ByteArrayOutputStream(Math.max(32, (to - from) * 64));
+        }
+        try (JsonGenerator main = createGenerator(buffers[0]);
+             JsonGenerator poc = createGenerator(buffers[1]);
+             JsonGenerator materials = createGenerator(buffers[2]);
+             JsonGenerator equipment = createGenerator(buffers[3])) {
+            for (int id = from; id < to; id++) {
+                main.writeStartObject();
+                main.writeNumberField("id", id);
+                main.writeStringField("siteName", pick(random, pools.siteNames()));
+                main.writeStringField("address", pick(random, pools.addresses()));
+                main.writeEndObject();
+
+                poc.writeStartObject();
+                poc.writeFieldId(id);
+                poc.writeStartObject();
+                poc.writeStringField("name", pick(random, pools.names()));
+                poc.writeStringField("title", pick(random, pools.titles()));
+                poc.writeStringField("phoneNumber", pick(random, pools.phoneNumbers()));
+                poc.writeEndObject();
+                poc.writeEndObject();
+
+                if (random.nextDouble() >= options.sparsity()) {
+                    for (int n = materialCount(random); n > 0; n--) {
+                        materials.writeStartObject();
+                        materials.writeFieldId(id);
+                        materials.writeString(pick(random, pools.materials()));
+                        materials.writeEndObject();
+                    }
+                }
+
+                if (random.nextDouble() >= options.sparsity()) {
+                    int mask = 0;
+                    for (int n = random.nextInt(1, 7); n > 0; n--) {
+                        mask |= 1 << random.nextInt(EQUIPMENT.length);
+                    }
+                    equipment.writeStartObject();
+                    equipment.writeFieldId(id);
+                    equipment.writeStartArray();
+                    for (HeavyEquipment heavyEquipment : EQUIPMENT) {
+                        if ((mask & (1 << heavyEquipment.ordinal())) != 0) {
+                            equipment.writeString(heavyEquipment.name());
+                        }
+                    }
+                    equipment.writeEndArray();
+                    equipment.writeEndObject();
+                }
+            }
+        }
+        byte[][] chunkBytes = new byte[FILES.length][];
+        for (int i = 0; i < FILES.length; i++) {
+            chunkBytes[i] = buffers[i].toByteArray();
         }
+        return chunkBytes;
     }
 
-    private Collection<String> generateRequiredEquipment() {
-        final int total = random.nextInt(7);
-        Set<String> set = new HashSet<>();
-        for (int i = 0; i < total; i++) {
-            set.add(fakeValuesService.fetchString("construction.heavy_equipment")
-                    .replace(" ", "")
-                    .replace("-", ""));
+    private JsonGenerator createGenerator(OutputStream out) throws IOException {
+        JsonGenerator generator = factory.createGenerator(out);
+        //the root value separator is what goes between the array elements of a chunk
+        if (options.format() == Format.PRETTY_JSON) {
+            generator.setPrettyPrinter(new DefaultPrettyPrinter().withRootSeparator(new SerializedString(", ")));
+        } else {
+            generator.setPrettyPrinter(new MinimalPrettyPrinter(","));
         }
-        return set;
+        return generator;
+    }
+
+    private int materialCount(SplittableRandom random) {
+        int max = options.maxMaterialsPerKey();
+        return switch (options.materialsDistribution()) {
+            case UNIFORM -> random.nextInt(1, max + 1);
+            case GEOMETRIC -> {
+                int n = 1;
+                while (n < max && random.nextBoolean()) {
+                    n++;
+                }
+                yield n;
+            }
+        };
+    }
+
+    private static String pick(SplittableRandom random, String[] pool) {
+        return pool[random.nextInt(pool.length)];
     }
 
-    private Collection<String> generateRequiredMaterials() {
-        final int total = random.nextInt(7);
-        LinkedList<String> list = new LinkedList<>();
-        for (int i = 0; i < total; i++) {
-            list.add(fakeValuesService.fetchString("construction.materials"));
+    /**
+     * Faker values drawn once from the seed, Faker itself is far too slow to call per record
+     */
+    private record Pools(String[] siteNames, String[] addresses, String[] names, String[] phoneNumbers,
+                         String[] titles, String[] materials) {
+        static Pools of(long seed) {
+            Random random = new Random(seed);
+            Faker faker = new Faker(random);
+            FakeValuesService fakeValuesService = new FakeValuesService(Locale.ENGLISH, new RandomService(random));
+            String[] siteNames = new String[POOL_SIZE];
+            String[] addresses = new String[POOL_SIZE];
+            String[] names = new String[POOL_SIZE];
+            String[] phoneNumbers = new String[POOL_SIZE];
+            for (int i = 0; i < POOL_SIZE; i++) {
+                siteNames[i] = faker.company().name();
+                addresses[i] = faker.address().fullAddress();
+                names[i] = faker.name().name();
+                phoneNumbers[i] = faker.phoneNumber().cellPhone();
+            }
+            return new Pools(siteNames, addresses, names, phoneNumbers,
+                    fetchList(fakeValuesService, "construction.roles"),
+                    fetchList(fakeValuesService, "construction.materials"));
+        }
+
+        private static String[] fetchList(FakeValuesService fakeValuesService, String key) {
+            if (!(fakeValuesService.fetchObject(key) instanceof List<?> values) || values.isEmpty()) {
+                throw new IllegalStateException("No faker values for " + key);
+            }
+            return values.stream()
+                    .map(String::valueOf)
+                    .toArray(String[]::new);
         }
-        return list;
     }
 }
@@ -0,0 +1,115 @@
+package join;
+
+import models.KeyedEntry;
+import models.MergedRecord;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Points of contact by ID, stored off-heap.
+ * <p>
+ * Contacts are encoded as 3 length-prefixed UTF-8 strings into an arena of 1 MB direct buffer pages, and the index only
+ * keeps an int address per ID (page in the high bits, offset in the low bits). Millions of contacts only cost the
+ * index arrays on the heap, a {@link MergedRecord.PointOfContact} is decoded on every lookup.
+ * <p>
+ * Replacing a contact appends the new one, the old bytes stay in the arena until the table is dropped.
+ */
+public final class ContactTable {
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int MAX_PAGES = 1 << (Integer.SIZE - PAGE_BITS);
+    private static final int MAX_STRING_LENGTH = 0xFFFF;
+
+    private final IntIndex index = new IntIndex();
+    private final List<ByteBuffer> pages = new ArrayList<>();
+    private int[] addresses = new int[1024];
+    @Nullable
+    private ByteBuffer page;
+
+    ContactTable() {
+    }
+
+    /**
+     * Loads a side input that doesn't need to be sorted. A later entry for the same ID replaces the earlier one.
+     * @param source contacts by ID
+     * @return the table, once the source completed
+     */
+    public static Mono<ContactTable> load(Flux<? extends Map.Entry<Integer, MergedRecord.PointOfContact>> source) {
+        return source.collect(ContactTable::new,
+                (table, entry) -> table.put(KeyedEntry.keyOf(entry), entry.getValue()));
+    }
+
+    void put(int id, MergedRecord.PointOfContact contact) {
+        byte[] name = encode(contact.name());
+        byte[] title = encode(contact.title());
+        byte[] phoneNumber = encode(contact.phoneNumber());
+        int length = 3 * Short.BYTES + name.length + title.length + phoneNumber.length;
+        if (page == null || page.remaining() < length) {
+            if (pages.size() == MAX_PAGES) {
+                throw new IllegalStateException("Contact arena is full after %d contacts".formatted(index.size()));
+            }
+            page = ByteBuffer.allocateDirect(PAGE_SIZE);
+            pages.add(page);
+        }
+        int address = ((pages.size() - 1) << PAGE_BITS) | page.position();
+        page.putShort((short) name.length).put(name)
+                .putShort((short) title.length).put(title)
+                .putShort((short) phoneNumber.length).put(phoneNumber);
+        int ordinal = index.putIfAbsent(id);
+        addresses = IntIndex.ensureCapacity(addresses, ordinal);
+        addresses[ordinal] = address;
+    }
+
+    /**
+     * @return the contact of the ID, or null if the ID isn't in the table
+     */
+    @Nullable
+    public MergedRecord.PointOfContact get(int id) {
+        int ordinal = index.get(id);
+        if (ordinal < 0) {
+            return null;
+        }
+        int address = addresses[ordinal];
+        ByteBuffer buffer = pages.get(address >>> PAGE_BITS);
+        int position = address & (PAGE_SIZE - 1);
+        String name = decode(buffer, position);
+        position += Short.BYTES + (buffer.getShort(position) & 0xFFFF);
+        String title = decode(buffer, position);
+        position += Short.BYTES + (buffer.getShort(position) & 0xFFFF);
+        String phoneNumber = decode(buffer, position);
+        return new MergedRecord.PointOfContact(name, title, phoneNumber);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the direct memory reserved by the arena
+     */
+    public long offHeapBytes() {
+        return (long) pages.size() * PAGE_SIZE;
+    }
+
+    private static byte[] encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("Contact field of %d bytes is over the %d bytes limit"
+                    .formatted(bytes.length, MAX_STRING_LENGTH));
+        }
+        return bytes;
+    }
+
+    private static String decode(ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[buffer.getShort(position) & 0xFFFF];
+        buffer.get(position + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
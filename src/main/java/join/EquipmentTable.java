@@ -0,0 +1,70 @@
+package join;
+
+import models.EquipmentSet;
+import models.HeavyEquipment;
+import models.KeyedEntry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.annotation.Nullable;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Equipment sets by ID, each stored as a {@code short} bitmask of {@link HeavyEquipment} ordinals.
+ * <p>
+ * A set costs 2 bytes, plus the 8 bytes of its key and ordinal in the {@link IntIndex}.
+ */
+public final class EquipmentTable {
+    private static final HeavyEquipment[] EQUIPMENT = HeavyEquipment.values();
+
+    static {
+        if (EQUIPMENT.length > Short.SIZE) {
+            throw new IllegalStateException("%d kinds of equipment don't fit a short bitmask".formatted(EQUIPMENT.length));
+        }
+    }
+
+    private final IntIndex index = new IntIndex();
+    private short[] masks = new short[1024];
+
+    EquipmentTable() {
+    }
+
+    /**
+     * Loads a side input that doesn't need to be sorted. A later entry for the same ID replaces the earlier one.
+     * @param source equipment sets by ID
+     * @return the table, once the source completed
+     */
+    public static Mono<EquipmentTable> load(Flux<? extends Map.Entry<Integer, ? extends Set<HeavyEquipment>>> source) {
+        return source.collect(EquipmentTable::new,
+                (table, entry) -> table.put(KeyedEntry.keyOf(entry), entry.getValue()));
+    }
+
+    void put(int id, Set<HeavyEquipment> equipment) {
+        int mask = EquipmentSet.maskOf(equipment);
+        int ordinal = index.putIfAbsent(id);
+        masks = IntIndex.ensureCapacity(masks, ordinal);
+        masks[ordinal] = (short) mask;
+    }
+
+    /**
+     * @return the bitmask of equipment ordinals, or -1 if the ID isn't in the table
+     */
+    public int mask(int id) {
+        int ordinal = index.get(id);
+        return ordinal < 0 ? -1 : masks[ordinal] & 0xFFFF;
+    }
+
+    /**
+     * @return the equipment of the ID, or null if the ID isn't in the table
+     */
+    @Nullable
+    public EquipmentSet get(int id) {
+        int mask = mask(id);
+        return mask < 0 ? null : EquipmentSet.ofMask(mask);
+    }
+
+    public int size() {
+        return index.size();
+    }
+}
@@ -0,0 +1,105 @@
+package join;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash index from int keys to dense ordinals {@code 0..size-1}, in insertion order.
+ * <p>
+ * Keys and ordinals live in two int arrays probed linearly, so nothing is boxed and there is no entry object per key.
+ * Values are kept by the tables in their own arrays indexed by ordinal, which never move when the index grows.
+ */
+final class IntIndex {
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private int[] keys;
+    //ordinal + 1, so that 0 marks an empty slot
+    private int[] slots;
+    private int mask;
+    private int size;
+
+    IntIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    IntIndex(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(expected * 2 - 1, 16)) << 1;
+        this.keys = new int[capacity];
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return the ordinal of the key, or -1 if absent
+     */
+    int get(int key) {
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == 0) {
+                return -1;
+            }
+            if (keys[i] == key) {
+                return slot - 1;
+            }
+        }
+    }
+
+    /**
+     * @return the ordinal of the key, which is {@link #size()} before the call if the key is new
+     */
+    int putIfAbsent(int key) {
+        int i = hash(key) & mask;
+        for (; slots[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return slots[i] - 1;
+            }
+        }
+        keys[i] = key;
+        slots[i] = ++size;
+        if (size * 2 > mask) {
+            grow();
+        }
+        return size - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        int capacity = oldKeys.length << 1;
+        if (capacity < 0) {
+            throw new IllegalStateException("IntIndex can't hold more than %d keys".formatted(size));
+        }
+        keys = new int[capacity];
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int j = 0; j < oldSlots.length; j++) {
+            if (oldSlots[j] != 0) {
+                int i = hash(oldKeys[j]) & mask;
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                slots[i] = oldSlots[j];
+            }
+        }
+    }
+
+    /**
+     * Sequential IDs would otherwise fill runs of neighbouring slots
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int[] ensureCapacity(int[] values, int ordinal) {
+        return ordinal < values.length ? values : Arrays.copyOf(values, values.length << 1);
+    }
+
+    static short[] ensureCapacity(short[] values, int ordinal) {
+        return ordinal < values.length ? values : Arrays.copyOf(values, values.length << 1);
+    }
+}
@@ -0,0 +1,62 @@
+package join;
+
+import models.HeavyEquipment;
+import models.MergedRecord;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hash join of the contacts and equipment side inputs: both are loaded into primitive keyed tables first, then every
+ * streamed record is enriched by lookup.
+ * <p>
+ * Unlike the sorted merge in {@code merger.Merger}, the side inputs don't need to be sorted, at the cost of holding
+ * them in memory. They are kept compact: see {@link ContactTable} and {@link EquipmentTable}.
+ * @author vibbix
+ */
+public final class LookupJoin {
+    private final ContactTable contacts;
+    private final EquipmentTable equipment;
+
+    public LookupJoin(ContactTable contacts, EquipmentTable equipment) {
+        this.contacts = contacts;
+        this.equipment = equipment;
+    }
+
+    /**
+     * Loads both side inputs concurrently
+     * @param contacts contacts by ID, in any order
+     * @param equipment equipment sets by ID, in any order
+     * @return the join, once both tables are loaded
+     */
+    public static Mono<LookupJoin> load(Flux<? extends Map.Entry<Integer, MergedRecord.PointOfContact>> contacts,
+                                        Flux<? extends Map.Entry<Integer, ? extends Set<HeavyEquipment>>> equipment) {
+        return Mono.zip(ContactTable.load(contacts), EquipmentTable.load(equipment), LookupJoin::new);
+    }
+
+    /**
+     * @return the record with the contact and equipment of its ID, or its own fields where the tables have nothing
+     */
+    public MergedRecord enrich(MergedRecord record) {
+        MergedRecord.PointOfContact contact = contacts.get(record.id());
+        Collection<HeavyEquipment> requiredEquipment = equipment.get(record.id());
+        if (contact == null && requiredEquipment == null) {
+            return record;
+        }
+        return new MergedRecord(record.id(), record.siteName(), record.address(),
+                contact != null ? contact : record.contact(),
+                record.requiredMaterials(),
+                requiredEquipment != null ? requiredEquipment : record.requiredEquipment());
+    }
+
+    public ContactTable contacts() {
+        return contacts;
+    }
+
+    public EquipmentTable equipment() {
+        return equipment;
+    }
+}
@@ -0,0 +1,63 @@
+package json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Metrics;
+import metrics.MetricsRegistry;
+
+/**
+ * Meters of one decoded source: {@code decoder.<name>.records}, {@code .bytes} and {@code .parseNanos}
+ */
+final class DecodeMetrics {
+    private static final DecodeMetrics DISABLED = new DecodeMetrics(false, Counter.NOOP, Counter.NOOP, Histogram.NOOP);
+
+    private final boolean enabled;
+    private final Counter records;
+    private final Counter bytes;
+    private final Histogram parseNanos;
+
+    private DecodeMetrics(boolean enabled, Counter records, Counter bytes, Histogram parseNanos) {
+        this.enabled = enabled;
+        this.records = records;
+        this.bytes = bytes;
+        this.parseNanos = parseNanos;
+    }
+
+    static DecodeMetrics of(String name) {
+        MetricsRegistry registry = Metrics.registry();
+        if (!registry.isEnabled()) {
+            return DISABLED;
+        }
+        String prefix = "decoder." + name;
+        return new DecodeMetrics(true, registry.counter(prefix + ".records"), registry.counter(prefix + ".bytes"),
+                registry.histogram(prefix + ".parseNanos"));
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return a start timestamp for {@link #parsed}, or 0 without reading the clock when disabled
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void parsed(long start) {
+        if (enabled) {
+            parseNanos.record(System.nanoTime() - start);
+            records.increment();
+        }
+    }
+
+    /**
+     * Adds the bytes the parser went through, called once when the parser is closed
+     */
+    void consumed(JsonParser parser) {
+        if (enabled) {
+            bytes.add(Math.max(0, parser.currentLocation().getByteOffset()));
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package json;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.concurrent.Queues;
+import reactor.util.context.Context;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Decodes the source on a dedicated thread into a bounded ring of batches, and flattens them back out on demand.
+ * <p>
+ * The ring requests {@link ReadAhead#batches()} batches up front and replenishes as they get consumed, so decoding
+ * runs ahead of the consumer instead of waiting on its requests.
+ * @author vibbix
+ */
+final class FluxReadAhead<T> extends Flux<T> {
+    private final Flux<T> source;
+    private final String name;
+    private final ReadAhead config;
+    private final ReadAheadStats stats;
+    private final ReaderThreads threads;
+
+    FluxReadAhead(Flux<T> source, String name, ReadAhead config, ReadAheadStats stats, ReaderThreads threads) {
+        this.source = source;
+        this.name = name;
+        this.config = config;
+        this.stats = stats;
+        this.threads = threads.dedicated();
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super T> actual) {
+        Scheduler reader = threads.open(name);
+        source.subscribeOn(reader, true)
+                .buffer(config.batchSize())
+                .subscribe(new ReadAheadSubscriber<>(actual, config.batches(), stats, threads, reader));
+    }
+
+    static final class ReadAheadSubscriber<T> implements CoreSubscriber<List<T>>, Subscription {
+        private final CoreSubscriber<? super T> actual;
+        private final int prefetch;
+        private final int limit;
+        private final Queue<List<T>> queue;
+        private final ReadAheadStats stats;
+        private final ReaderThreads threads;
+        private final Scheduler reader;
+
+        private Subscription s;
+
+        //only touched from within drain()
+        private List<T> current;
+        private int index;
+        private int consumed;
+        private long emitted;
+        private long stallStart;
+
+        volatile boolean done;
+        Throwable error;
+        volatile boolean cancelled;
+
+        volatile int wip;
+        static final AtomicIntegerFieldUpdater<ReadAheadSubscriber> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(ReadAheadSubscriber.class, "wip");
+
+        volatile long requested;
+        static final AtomicLongFieldUpdater<ReadAheadSubscriber> REQUESTED =
+                AtomicLongFieldUpdater.newUpdater(ReadAheadSubscriber.class, "requested");
+
+        ReadAheadSubscriber(CoreSubscriber<? super T> actual, int prefetch, ReadAheadStats stats, ReaderThreads threads,
+                            Scheduler reader) {
+            this.actual = actual;
+            this.prefetch = prefetch;
+            this.limit = Math.max(1, prefetch - (prefetch >> 2));
+            this.queue = Queues.<List<T>>get(prefetch).get();
+            this.stats = stats;
+            this.threads = threads;
+            this.reader = reader;
+        }
+
+        @Override
+        public Context currentContext() {
+            return actual.currentContext();
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (Operators.validate(this.s, s)) {
+                this.s = s;
+                actual.onSubscribe(this);
+                s.request(prefetch);
+            }
+        }
+
+        @Override
+        public void onNext(List<T> batch) {
+            stats.recordBatch(batch.size());
+            if (!queue.offer(batch)) {
+                s.cancel();
+                onError(Exceptions.failWithOverflow("Read-ahead ring is full"));
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                Operators.addCap(REQUESTED, this, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                s.cancel();
+                release();
+                if (WIP.getAndIncrement(this) == 0) {
+                    clear();
+                }
+            }
+        }
+
+        private void release() {
+            threads.release(reader);
+        }
+
+        private void clear() {
+            current = null;
+            queue.clear();
+        }
+
+        void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                long r = requested;
+                long e = emitted;
+                while (e != r) {
+                    if (cancelled) {
+                        clear();
+                        return;
+                    }
+                    if (done && error != null) {
+                        terminate();
+                        return;
+                    }
+                    if (current == null || index == current.size()) {
+                        boolean d = done;
+                        List<T> next = queue.poll();
+                        if (current != null) {
+                            current = null;
+                            if (++consumed == limit) {
+                                consumed = 0;
+                                s.request(limit);
+                            }
+                        }
+                        if (next == null) {
+                            if (d) {
+                                terminate();
+                                return;
+                            }
+                            //demand is outstanding but nothing was decoded ahead of us
+                            if (stallStart == 0) {
+                                stallStart = System.nanoTime();
+                            }
+                            break;
+                        }
+                        if (stallStart != 0) {
+                            stats.recordStall(System.nanoTime() - stallStart);
+                            stallStart = 0;
+                        }
+                        current = next;
+                        index = 0;
+                        continue;
+                    }
+                    actual.onNext(current.get(index++));
+                    e++;
+                }
+                if (e == r && !cancelled && done && (current == null || index == current.size()) && queue.isEmpty()) {
+                    terminate();
+                    return;
+                }
+                emitted = e;
+                missed = WIP.addAndGet(this, -missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        private void terminate() {
+            clear();
+            release();
+            Throwable ex = error;
+            if (ex != null) {
+                actual.onError(ex);
+            } else {
+                actual.onComplete();
+            }
+        }
+    }
+}
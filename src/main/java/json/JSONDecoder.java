@@ -3,48 +3,465 @@ package json;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import models.HeavyEquipment;
+import models.KeyedEntry;
 import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.annotation.Nullable;
 
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 /**
  * Simple JSON Decoder for turning a mapping iterator into a Flux
  * @author vibbix
  */
 public class JSONDecoder {
+    private static final byte[] ARRAY_START = {'['};
     private final ObjectMapper mapper;
-    private final Scheduler scheduler;
+    private final ReaderThreads threads;
+    private final boolean modelDeserializers;
+    @Nullable
+    private final ReadAhead readAhead;
+    private final Map<String, ReadAhead> sourceReadAhead = new ConcurrentHashMap<>();
+    private final Map<String, ReadAheadStats> readAheadStats = new ConcurrentHashMap<>();
+
     public JSONDecoder() {
-        this.mapper = JsonMapper.builder()
-                .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
-                .build();
-        this.scheduler = Schedulers.boundedElastic();
+        this(null);
+    }
+
+    /**
+     * @param readAhead read-ahead applied to every source, or null to decode on the shared bounded elastic scheduler
+     */
+    public JSONDecoder(@Nullable ReadAhead readAhead) {
+        this(readAhead, ReaderThreads.BOUNDED_ELASTIC);
+    }
+
+    /**
+     * @param readAhead read-ahead applied to every source, or null to decode without read-ahead
+     * @param threads where the blocking reads of each source run
+     */
+    public JSONDecoder(@Nullable ReadAhead readAhead, ReaderThreads threads) {
+        this(readAhead, threads, true);
+    }
+
+    /**
+     * @param modelDeserializers false to have databind introspect the model records, like before they had
+     *                           {@link ModelDeserializers}
+     */
+    JSONDecoder(@Nullable ReadAhead readAhead, ReaderThreads threads, boolean modelDeserializers) {
+        JsonMapper.Builder builder = JsonMapper.builder()
+                .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS);
+        if (modelDeserializers) {
+            builder.addModule(ModelDeserializers.module());
+        }
+        this.mapper = builder.build();
+        this.modelDeserializers = modelDeserializers;
+        this.threads = threads;
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * Overrides the read-ahead settings of a single source, enabling read-ahead for it if it wasn't already
+     * @param resourcePath the source to tune
+     * @param readAhead the settings for that source
+     * @return this decoder
+     */
+    public JSONDecoder readAhead(String resourcePath, ReadAhead readAhead) {
+        sourceReadAhead.put(resourcePath, readAhead);
+        return this;
+    }
+
+    /**
+     * @return stats for every source that was read with read-ahead enabled
+     */
+    public Collection<ReadAheadStats> getReadAheadStats() {
+        return Collections.unmodifiableCollection(readAheadStats.values());
     }
 
     public <T> Flux<T> createFluxReader(String resourcePath, TypeReference<T> type) {
-        return Flux.usingWhen(Mono.fromCallable(() -> mapper.createParser(JSONDecoder.class.getResourceAsStream(resourcePath))),
-                parser -> createRxJacksonParser(parser, type),
-                JSONDecoder::closeSilently)
-                .subscribeOn(scheduler, true);
+        return read(resourcePath, openResource(resourcePath), type);
+    }
+
+    /**
+     * Reads a JSON array from a file on disk, through a memory-mapped view of it
+     * @param file file to read
+     * @param type type of each array element
+     * @return a flux of the array elements, in file order
+     */
+    public <T> Flux<T> createFluxReader(Path file, TypeReference<T> type) {
+        return read(file.toString(), openFile(file), type);
+    }
+
+    /**
+     * Reads a JSON array from an already opened channel. The channel is closed once the flux terminates, so the
+     * returned flux can only be subscribed to once.
+     * @param name name of the source, used for scheduling and stats
+     * @param channel channel to read
+     * @param type type of each array element
+     * @return a flux of the array elements, in channel order
+     */
+    public <T> Flux<T> createFluxReader(String name, ReadableByteChannel channel, TypeReference<T> type) {
+        return read(name, openChannel(channel), type);
+    }
+
+    /**
+     * Reads a JSON array in batches of up to batchSize elements. The batches are filled on the reader's thread, so
+     * downstream operators are signalled once per batch instead of once per element. Batches don't go through the
+     * read-ahead ring, the consumer's prefetch of whole batches reads ahead instead.
+     * @param resourcePath classpath resource to read
+     * @param type type of each array element
+     * @param batchSize maximum number of elements per batch
+     * @return a flux of batches of the array elements, in file order
+     */
+    public <T> Flux<List<T>> createBatchReader(String resourcePath, TypeReference<T> type, int batchSize) {
+        return scheduleBatches(resourcePath, decode(resourcePath, openResource(resourcePath), type).buffer(batchSize));
+    }
+
+    public <T> Flux<List<T>> createBatchReader(Path file, TypeReference<T> type, int batchSize) {
+        return scheduleBatches(file.toString(), decode(file.toString(), openFile(file), type).buffer(batchSize));
+    }
+
+    private <T> Flux<T> read(String name, Mono<JsonParser> parserMono, TypeReference<T> type) {
+        return schedule(name, decode(name, parserMono, type));
+    }
+
+    private <T> Flux<T> decode(String name, Mono<JsonParser> parserMono, TypeReference<T> type) {
+        DecodeMetrics metrics = DecodeMetrics.of(name);
+        return Flux.usingWhen(parserMono,
+                parser -> createRxJacksonParser(parser, type, metrics),
+                parser -> {
+                    metrics.consumed(parser);
+                    return closeSilently(parser);
+                });
+    }
+
+    /**
+     * Creates a reader for arrays of single key objects ({@code [{"1001": ...}, {"1002": ...}]}).
+     * <p>
+     * Unlike {@link #createFluxReader(String, TypeReference)} with a {@code Map.Entry} type, this walks the parser
+     * tokens directly: the key is parsed as a primitive int, and only the value goes through databind.
+     * @param resourcePath classpath resource to read
+     * @param valueType type of the value of each object
+     * @return a flux of keyed entries, in file order
+     */
+    public <V> Flux<KeyedEntry<V>> createKeyedFluxReader(String resourcePath, TypeReference<V> valueType) {
+        return readKeyed(resourcePath, openResource(resourcePath), mapper.getTypeFactory().constructType(valueType));
+    }
+
+    public <V> Flux<KeyedEntry<V>> createKeyedFluxReader(String resourcePath, Class<V> valueType) {
+        return readKeyed(resourcePath, openResource(resourcePath), mapper.getTypeFactory().constructType(valueType));
+    }
+
+    public <V> Flux<KeyedEntry<V>> createKeyedFluxReader(Path file, TypeReference<V> valueType) {
+        return readKeyed(file.toString(), openFile(file), mapper.getTypeFactory().constructType(valueType));
+    }
+
+    public <V> Flux<KeyedEntry<V>> createKeyedFluxReader(Path file, Class<V> valueType) {
+        return readKeyed(file.toString(), openFile(file), mapper.getTypeFactory().constructType(valueType));
+    }
+
+    public <V> Flux<KeyedEntry<V>> createKeyedFluxReader(String name, ReadableByteChannel channel, Class<V> valueType) {
+        return readKeyed(name, openChannel(channel), mapper.getTypeFactory().constructType(valueType));
+    }
+
+    /**
+     * Reads only the elements with a key in [fromKey, toKey] from a sorted file, by seeking to the closest indexed
+     * offset instead of scanning the file from the start. Reading stops as soon as the range has been passed.
+     * <p>
+     * Stats and meters are kept per file, not per range. A single key read skips read-ahead and runs on the shared
+     * bounded elastic pool, so lookups don't start a thread each.
+     * @param file sorted file to read
+     * @param index sparse index built over that file
+     * @param type type of each array element
+     * @param keyExtractor extracts the key of an element
+     * @param fromKey first key to read
+     * @param toKey last key to read
+     * @return the elements within the range, in file order
+     */
+    public <T> Flux<T> createRangeReader(Path file, SparseIndex index, TypeReference<T> type,
+                                         ToIntFunction<? super T> keyExtractor, int fromKey, int toKey) {
+        Flux<T> source = decode(file.toString(), openFileAt(file, index, fromKey), type);
+        return scheduleRange(file, fromKey, toKey, restrict(source, keyExtractor, fromKey, toKey));
+    }
+
+    public <V> Flux<KeyedEntry<V>> createKeyedRangeReader(Path file, SparseIndex index, TypeReference<V> valueType,
+                                                          int fromKey, int toKey) {
+        Flux<KeyedEntry<V>> source = decodeKeyed(file.toString(), openFileAt(file, index, fromKey),
+                mapper.getTypeFactory().constructType(valueType));
+        return scheduleRange(file, fromKey, toKey, restrict(source, KeyedEntry::key, fromKey, toKey));
+    }
+
+    public <V> Flux<KeyedEntry<V>> createKeyedRangeReader(Path file, SparseIndex index, Class<V> valueType,
+                                                          int fromKey, int toKey) {
+        Flux<KeyedEntry<V>> source = decodeKeyed(file.toString(), openFileAt(file, index, fromKey),
+                mapper.getTypeFactory().constructType(valueType));
+        return scheduleRange(file, fromKey, toKey, restrict(source, KeyedEntry::key, fromKey, toKey));
+    }
+
+    private <T> Flux<T> scheduleRange(Path file, int fromKey, int toKey, Flux<T> source) {
+        if (fromKey == toKey) {
+            //a point lookup is over long before read-ahead or a thread of its own would pay off
+            return source.subscribeOn(Schedulers.boundedElastic(), true);
+        }
+        return schedule(file.toString(), source);
+    }
+
+    private static <T> Flux<T> restrict(Flux<T> source, ToIntFunction<? super T> keyExtractor, int fromKey, int toKey) {
+        return source.skipWhile(value -> keyExtractor.applyAsInt(value) < fromKey)
+                .takeWhile(value -> keyExtractor.applyAsInt(value) <= toKey);
+    }
+
+    /**
+     * Reads an array of single key objects in batches of up to batchSize entries, filled on the reader's thread
+     * @param resourcePath classpath resource to read
+     * @param valueType type of the value of each object
+     * @param batchSize maximum number of entries per batch
+     * @return a flux of batches of keyed entries, in file order
+     * @see #createKeyedFluxReader(String, TypeReference)
+     */
+    public <V> Flux<List<KeyedEntry<V>>> createKeyedBatchReader(String resourcePath, TypeReference<V> valueType,
+                                                               int batchSize) {
+        return readKeyedBatches(resourcePath, openResource(resourcePath),
+                mapper.getTypeFactory().constructType(valueType), batchSize);
+    }
+
+    public <V> Flux<List<KeyedEntry<V>>> createKeyedBatchReader(String resourcePath, Class<V> valueType,
+                                                               int batchSize) {
+        return readKeyedBatches(resourcePath, openResource(resourcePath),
+                mapper.getTypeFactory().constructType(valueType), batchSize);
+    }
+
+    public <V> Flux<List<KeyedEntry<V>>> createKeyedBatchReader(Path file, TypeReference<V> valueType, int batchSize) {
+        return readKeyedBatches(file.toString(), openFile(file), mapper.getTypeFactory().constructType(valueType),
+                batchSize);
     }
 
-    private <T> Flux<T> createRxJacksonParser(JsonParser parser, TypeReference<T> type) {
+    public <V> Flux<List<KeyedEntry<V>>> createKeyedBatchReader(Path file, Class<V> valueType, int batchSize) {
+        return readKeyedBatches(file.toString(), openFile(file), mapper.getTypeFactory().constructType(valueType),
+                batchSize);
+    }
+
+    private <V> Flux<KeyedEntry<V>> readKeyed(String name, Mono<JsonParser> parserMono, JavaType valueType) {
+        return schedule(name, decodeKeyed(name, parserMono, valueType));
+    }
+
+    private <V> Flux<List<KeyedEntry<V>>> readKeyedBatches(String name, Mono<JsonParser> parserMono,
+                                                           JavaType valueType, int batchSize) {
+        return scheduleBatches(name, this.<V>decodeKeyed(name, parserMono, valueType).buffer(batchSize));
+    }
+
+    private <V> Flux<KeyedEntry<V>> decodeKeyed(String name, Mono<JsonParser> parserMono, JavaType valueType) {
+        ValueParser<V> valueParser = valueParser(valueType);
+        DecodeMetrics metrics = DecodeMetrics.of(name);
+        return Flux.usingWhen(parserMono,
+                parser -> createKeyedJacksonParser(parser, valueParser, metrics),
+                parser -> {
+                    metrics.consumed(parser);
+                    return closeSilently(parser);
+                });
+    }
+
+    /**
+     * Moves the blocking parser reads of a source off the subscriber's thread
+     */
+    private <T> Flux<T> schedule(String name, Flux<T> source) {
+        ReadAhead config = sourceReadAhead.getOrDefault(name, readAhead);
+        if (config == null) {
+            return onReaderThread(name, source, threads);
+        }
+        ReadAheadStats stats = readAheadStats.computeIfAbsent(name, ReadAheadStats::new);
+        return new FluxReadAhead<>(source, name, config, stats, threads);
+    }
+
+    /**
+     * Moves the blocking parser reads of a batched source off the subscriber's thread. The read-ahead ring would only
+     * re-batch the batches into batches of its own, so they skip it: a source with read-ahead still gets a thread of
+     * its own, and reads as far ahead as its consumer requests batches.
+     */
+    private <T> Flux<List<T>> scheduleBatches(String name, Flux<List<T>> batches) {
+        boolean readsAhead = sourceReadAhead.getOrDefault(name, readAhead) != null;
+        return onReaderThread(name, batches, readsAhead ? threads.dedicated() : threads);
+    }
+
+    /**
+     * @return the source subscribed on a scheduler of threads, released once it completes, fails or is cancelled
+     */
+    static <T> Flux<T> onReaderThread(String name, Flux<T> source, ReaderThreads threads) {
+        return Flux.using(() -> threads.open(name), reader -> source.subscribeOn(reader, true), threads::release);
+    }
+
+    private Mono<JsonParser> openResource(String resourcePath) {
+        return Mono.fromCallable(() -> mapper.createParser(JSONDecoder.class.getResourceAsStream(resourcePath)));
+    }
+
+    private Mono<JsonParser> openFile(Path file) {
+        return Mono.fromCallable(() -> mapper.createParser(MappedInputStream.open(file)));
+    }
+
+    /**
+     * Opens the file at the indexed offset closest to key. That offset points at an element in the middle of the
+     * array, so a '[' is put back in front of it for the parser to see a regular array.
+     */
+    private Mono<JsonParser> openFileAt(Path file, SparseIndex index, int key) {
+        return Mono.fromCallable(() -> {
+            if (!index.matches(file)) {
+                throw new IllegalStateException("Index is stale for " + file);
+            }
+            long offset = index.floorOffset(key);
+            if (offset < 0) {
+                return mapper.createParser(MappedInputStream.open(file));
+            }
+            InputStream in = new SequenceInputStream(new ByteArrayInputStream(ARRAY_START),
+                    MappedInputStream.open(file, offset));
+            return mapper.createParser(in);
+        });
+    }
+
+    private Mono<JsonParser> openChannel(ReadableByteChannel channel) {
+        return Mono.fromCallable(() -> mapper.createParser(Channels.newInputStream(channel)));
+    }
+
+    private <V> Flux<KeyedEntry<V>> createKeyedJacksonParser(JsonParser parser, ValueParser<V> valueParser,
+                                                             DecodeMetrics metrics) {
+        return Flux.generate(() -> {
+            //We need to skip forward to the first token to be parsed before we begin
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalStateException("Did not start with START_ARRAY token");
+            }
+            return parser;
+        }, (p, sink) -> {
+            try {
+                long start = metrics.start();
+                JsonToken jToken = p.nextToken();
+                if (jToken == JsonToken.END_ARRAY || jToken == null) {
+                    sink.complete();
+                    return p;
+                }
+                if (jToken != JsonToken.START_OBJECT) {
+                    sink.error(new IllegalStateException("Expected START_OBJECT token but got %s".formatted(jToken)));
+                    return p;
+                }
+                if (p.nextToken() != JsonToken.FIELD_NAME) {
+                    sink.error(new IllegalStateException("Expected a single key object at %s".formatted(p.currentLocation())));
+                    return p;
+                }
+                int key = parseIntKey(p);
+                p.nextToken();
+                V value = valueParser.parse(p);
+                if (p.nextToken() != JsonToken.END_OBJECT) {
+                    sink.error(new IllegalStateException("Expected a single key object at %s".formatted(p.currentLocation())));
+                    return p;
+                }
+                metrics.parsed(start);
+                sink.next(new KeyedEntry<>(key, value));
+            } catch (IOException | NumberFormatException e) {
+                sink.error(e);
+            }
+            return p;
+        });
+    }
+
+    /**
+     * Parses the current FIELD_NAME straight from the parser's text buffer, without creating a String
+     */
+    static int parseIntKey(JsonParser parser) throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int end = offset + parser.getTextLength();
+        if (offset == end) {
+            throw new NumberFormatException("Empty key");
+        }
+        boolean negative = chars[offset] == '-';
+        int i = negative ? offset + 1 : offset;
+        if (i == end || end - i > 10) {
+            throw new NumberFormatException("Not an int key: " + new String(chars, offset, end - offset));
+        }
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not an int key: " + new String(chars, offset, end - offset));
+            }
+            result = result * 10 + digit;
+        }
+        if (negative) {
+            result = -result;
+        }
+        if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Key out of int range: " + new String(chars, offset, end - offset));
+        }
+        return (int) result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> ValueParser<V> valueParser(JavaType valueType) {
+        if (valueType.getRawClass() == String.class) {
+            //plain strings (materials) don't need databind at all
+            return p -> (V) p.getValueAsString();
+        }
+        if (modelDeserializers && valueType.getRawClass() == EnumSet.class
+                && valueType.getContentType().getRawClass() == HeavyEquipment.class) {
+            //equipment arrays are read straight into the set, no collection deserializer to look up
+            return p -> (V) ModelDeserializers.readEquipment(p);
+        }
+        ObjectReader reader = mapper.readerFor(valueType);
+        return reader::readValue;
+    }
+
+    @FunctionalInterface
+    private interface ValueParser<V> {
+        V parse(JsonParser parser) throws IOException;
+    }
+
+    private <T> Flux<T> createRxJacksonParser(JsonParser parser, TypeReference<T> type, DecodeMetrics metrics) {
         return Flux.usingWhen(mappingIteratorMono(parser, type),
-                objMapper -> Flux.fromIterable((Iterable<? extends T>) () -> (Iterator<T>) objMapper),
+                objMapper -> Flux.fromIterable((Iterable<? extends T>) () -> metrics.isEnabled()
+                        ? timed((Iterator<T>) objMapper, metrics)
+                        : (Iterator<T>) objMapper),
                 JSONDecoder::closeSilently);
     }
 
+    private static <T> Iterator<T> timed(Iterator<T> iterator, DecodeMetrics metrics) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                long start = metrics.start();
+                T next = iterator.next();
+                metrics.parsed(start);
+                return next;
+            }
+        };
+    }
+
     private <T, E> Mono<MappingIterator<? extends T>> mappingIteratorMono(JsonParser parser, TypeReference<T> type) {
         Mono<Mono<MappingIterator<T>>> m =  Mono.fromCallable(() -> {
             try {
@@ -0,0 +1,116 @@
+package json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * InputStream over a memory-mapped file.
+ * <p>
+ * Reads come straight out of the page cache instead of being copied through a heap buffer by {@code FileInputStream}.
+ * A single mapping can't exceed 2 GB, so the file is mapped lazily in chunks of {@link #CHUNK_SIZE}, and only the
+ * chunk being read is held onto.
+ * @author vibbix
+ */
+public final class MappedInputStream extends InputStream {
+    static final long CHUNK_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long chunkSize;
+    private long position;
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+
+    MappedInputStream(FileChannel channel, long position, long chunkSize) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.chunkSize = chunkSize;
+        this.position = Math.min(position, size);
+    }
+
+    public static MappedInputStream open(Path file) throws IOException {
+        return open(file, 0);
+    }
+
+    /**
+     * @param file file to map
+     * @param position byte offset to start reading from
+     * @return a stream positioned at {@code position}
+     */
+    public static MappedInputStream open(Path file, long position) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MappedInputStream(channel, position, CHUNK_SIZE);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the mapped chunk holding the current position, or null at the end of the file
+     */
+    private MappedByteBuffer current() throws IOException {
+        if (position >= size) {
+            return null;
+        }
+        if (chunk == null || position < chunkStart || position >= chunkStart + chunk.capacity()) {
+            chunkStart = position - (position % chunkSize);
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, Math.min(chunkSize, size - chunkStart));
+        }
+        chunk.position((int) (position - chunkStart));
+        return chunk;
+    }
+
+    @Override
+    public int read() throws IOException {
+        MappedByteBuffer buffer = current();
+        if (buffer == null) {
+            return -1;
+        }
+        position++;
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        MappedByteBuffer buffer = current();
+        if (buffer == null) {
+            return -1;
+        }
+        //never straddle a chunk boundary in one read, the caller just comes back for the rest
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, size - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, size - position);
+    }
+
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunk = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,175 @@
+package json;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import models.EquipmentSet;
+import models.HeavyEquipment;
+import models.MergedRecord;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hand-written deserializers for the model records, registered on the decoder's mapper.
+ * <p>
+ * Without them, the first read of each type has databind introspect the record through reflection (constructor,
+ * accessors, annotations) and build a bean deserializer, which dominates the startup of short merge jobs. These walk
+ * the tokens directly instead, with the same results: unknown fields are reported the way databind would, and enum names
+ * are matched case-insensitively like {@code ACCEPT_CASE_INSENSITIVE_ENUMS}. A missing required field is left to the
+ * record's constructor, and its NullPointerException is reported as the same {@code ValueInstantiationException}
+ * databind reports.
+ */
+final class ModelDeserializers {
+    private static final HeavyEquipment[] EQUIPMENT = HeavyEquipment.values();
+
+    private ModelDeserializers() {
+    }
+
+    static SimpleModule module() {
+        return new SimpleModule("rx-models")
+                .addDeserializer(MergedRecord.class, new MergedRecordDeserializer())
+                .addDeserializer(MergedRecord.PointOfContact.class, new PointOfContactDeserializer());
+    }
+
+    /**
+     * Reads an array of equipment names, like the values of equipment.json
+     * @return the bitmask of the equipment ordinals
+     */
+    static int readEquipmentMask(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(p, "Expected START_ARRAY token but got %s".formatted(p.currentToken()));
+        }
+        int mask = 0;
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            mask |= 1 << equipmentOf(p).ordinal();
+        }
+        return mask;
+    }
+
+    static EnumSet<HeavyEquipment> readEquipment(JsonParser p) throws IOException {
+        return EquipmentSet.ofMask(readEquipmentMask(p)).toEnumSet();
+    }
+
+    private static HeavyEquipment equipmentOf(JsonParser p) throws IOException {
+        String name = p.getValueAsString();
+        if (name != null) {
+            for (HeavyEquipment equipment : EQUIPMENT) {
+                if (equipment.name().equalsIgnoreCase(name)) {
+                    return equipment;
+                }
+            }
+        }
+        throw new JsonParseException(p, "Not a HeavyEquipment: " + p.getText());
+    }
+
+    private static final class MergedRecordDeserializer extends StdDeserializer<MergedRecord> {
+        MergedRecordDeserializer() {
+            super(MergedRecord.class);
+        }
+
+        @Override
+        public MergedRecord deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            int id = 0;
+            String siteName = null;
+            String address = null;
+            MergedRecord.PointOfContact contact = null;
+            Map<String, Long> materials = null;
+            EquipmentSet equipment = null;
+            for (String field = startObject(p, ctxt, this); field != null; field = p.nextFieldName()) {
+                JsonToken token = p.nextToken();
+                switch (field) {
+                    case "id" -> id = _parseIntPrimitive(p, ctxt);
+                    case "siteName" -> siteName = parseString(p, ctxt);
+                    case "address" -> address = parseString(p, ctxt);
+                    case "contact" -> contact = token == JsonToken.VALUE_NULL ? null
+                            : PointOfContactDeserializer.INSTANCE.deserialize(p, ctxt);
+                    case "requiredMaterials" -> materials = token == JsonToken.VALUE_NULL ? null
+                            : parseMaterials(p, ctxt);
+                    case "requiredEquipment" -> equipment = token == JsonToken.VALUE_NULL ? null
+                            : EquipmentSet.ofMask(readEquipmentMask(p));
+                    default -> handleUnknownProperty(p, ctxt, MergedRecord.class, field);
+                }
+            }
+            try {
+                return new MergedRecord(id, siteName, address, contact, materials, equipment);
+            } catch (NullPointerException e) {
+                return (MergedRecord) ctxt.handleInstantiationProblem(MergedRecord.class, null, e);
+            }
+        }
+
+        private Map<String, Long> parseMaterials(JsonParser p, DeserializationContext ctxt) throws IOException {
+            Map<String, Long> materials = new HashMap<>();
+            for (String material = startObject(p, ctxt, this); material != null; material = p.nextFieldName()) {
+                p.nextToken();
+                materials.put(material, _parseLongPrimitive(p, ctxt));
+            }
+            return materials;
+        }
+    }
+
+    private static final class PointOfContactDeserializer extends StdDeserializer<MergedRecord.PointOfContact> {
+        static final PointOfContactDeserializer INSTANCE = new PointOfContactDeserializer();
+
+        PointOfContactDeserializer() {
+            super(MergedRecord.PointOfContact.class);
+        }
+
+        @Override
+        public MergedRecord.PointOfContact deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            String name = null;
+            String title = null;
+            String phoneNumber = null;
+            for (String field = startObject(p, ctxt, this); field != null; field = p.nextFieldName()) {
+                p.nextToken();
+                switch (field) {
+                    case "name" -> name = parseString(p, ctxt);
+                    case "title" -> title = parseString(p, ctxt);
+                    case "phoneNumber" -> phoneNumber = parseString(p, ctxt);
+                    default -> handleUnknownProperty(p, ctxt, MergedRecord.PointOfContact.class, field);
+                }
+            }
+            try {
+                return new MergedRecord.PointOfContact(name, title, phoneNumber);
+            } catch (NullPointerException e) {
+                return (MergedRecord.PointOfContact) ctxt.handleInstantiationProblem(MergedRecord.PointOfContact.class,
+                        null, e);
+            }
+        }
+    }
+
+    /**
+     * Steps into an object, whether the parser is on its START_OBJECT or already on its first field
+     * @return the name of the first field, or null if the object is empty
+     */
+    private static String startObject(JsonParser p, DeserializationContext ctxt, StdDeserializer<?> deserializer)
+            throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            return p.nextFieldName();
+        }
+        if (token == JsonToken.FIELD_NAME) {
+            return p.currentName();
+        }
+        if (token == JsonToken.END_OBJECT) {
+            return null;
+        }
+        return ctxt.reportInputMismatch(deserializer, "Expected START_OBJECT token but got %s", token);
+    }
+
+    private static String parseString(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (p.currentToken() == JsonToken.VALUE_STRING) {
+            return p.getText();
+        }
+        //numbers and booleans are coerced like databind does
+        return ctxt.readValue(p, String.class);
+    }
+}
@@ -0,0 +1,22 @@
+package json;
+
+/**
+ * Read-ahead settings for a decoded source.
+ * <p>
+ * With read-ahead enabled, a source is decoded on its own dedicated thread into a bounded ring of pre-parsed batches,
+ * so the consumer only waits on I/O when that ring runs empty.
+ * @param batchSize number of decoded elements per batch
+ * @param batches number of batches the ring can hold ahead of the consumer (the per-source prefetch)
+ */
+public record ReadAhead(int batchSize, int batches) {
+    public static final ReadAhead DEFAULT = new ReadAhead(256, 8);
+
+    public ReadAhead {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize > 0 required but it was " + batchSize);
+        }
+        if (batches <= 0) {
+            throw new IllegalArgumentException("batches > 0 required but it was " + batches);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package json;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-source read-ahead counters.
+ * <p>
+ * Stall time is the time the consumer had outstanding demand while the source's read-ahead ring was empty, so the
+ * source with the highest stall time is the one holding the merge back.
+ */
+public final class ReadAheadStats {
+    private final String name;
+    private final LongAdder records = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder stallNanos = new LongAdder();
+    private final LongAdder stalls = new LongAdder();
+
+    public ReadAheadStats(String name) {
+        this.name = name;
+    }
+
+    void recordBatch(int size) {
+        batches.increment();
+        records.add(size);
+    }
+
+    void recordStall(long nanos) {
+        stalls.increment();
+        stallNanos.add(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRecords() {
+        return records.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getStalls() {
+        return stalls.sum();
+    }
+
+    public Duration getStallTime() {
+        return Duration.ofNanos(stallNanos.sum());
+    }
+
+    @Override
+    public String toString() {
+        return "ReadAheadStats[name=%s, records=%d, batches=%d, stalls=%d, stallTime=%s]"
+                .formatted(name, getRecords(), getBatches(), getStalls(), getStallTime());
+    }
+}
@@ -0,0 +1,53 @@
+package json;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Where the blocking parser reads of each decoded source run.
+ * <p>
+ * The bounded elastic pool is capped at 10 threads per core, so merges over hundreds of shards queue up behind it, and
+ * one platform thread per source costs a full stack each. A virtual thread per source parks cheaply while it waits on
+ * I/O or on demand, so every shard can keep its own blocking reader.
+ */
+public enum ReaderThreads {
+    /**
+     * Shared {@link Schedulers#boundedElastic()} pool. Read-ahead sources still get a dedicated platform thread.
+     */
+    BOUNDED_ELASTIC,
+    /**
+     * One dedicated platform thread per source
+     */
+    PLATFORM,
+    /**
+     * One dedicated virtual thread per source
+     */
+    VIRTUAL;
+
+    /**
+     * @param name name of the source, used for the thread name
+     * @return the scheduler to read the source on, to hand back to {@link #release} once the source terminated
+     */
+    Scheduler open(String name) {
+        return switch (this) {
+            case BOUNDED_ELASTIC -> Schedulers.boundedElastic();
+            case PLATFORM -> Schedulers.newSingle("json-reader-" + name, true);
+            //a single threaded executor keeps the reads of a source in order, unlike a thread per task executor
+            case VIRTUAL -> Schedulers.newSingle(Thread.ofVirtual().name("json-reader-" + name).factory());
+        };
+    }
+
+    void release(Scheduler scheduler) {
+        if (this != BOUNDED_ELASTIC) {
+            //graceful, as this can run on the reader thread itself
+            scheduler.disposeGracefully().subscribe();
+        }
+    }
+
+    /**
+     * @return the threads read-ahead sources run on, which always need a thread of their own
+     */
+    ReaderThreads dedicated() {
+        return this == BOUNDED_ELASTIC ? PLATFORM : this;
+    }
+}
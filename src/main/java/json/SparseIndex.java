@@ -0,0 +1,244 @@
+package json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Sparse key to byte offset index over a JSON array that is sorted by key.
+ * <p>
+ * Roughly every {@code stride}-th element gets an entry, stored as primitive {@code int[]} keys and {@code long[]}
+ * offsets. Entries are only placed on the first element of a key, so seeking to an entry never skips over an earlier
+ * element with the same key (materials repeat keys). Both shapes of input are understood: records with an
+ * {@code "id"} field, and single key objects ({@code {"1001": ...}}).
+ * <p>
+ * The index is persisted as a sidecar file next to the input ({@code main.json.idx}), along with the size and
+ * modification time of the input so stale indexes get rebuilt.
+ * @author vibbix
+ */
+public final class SparseIndex {
+    private static final int MAGIC = 0x52584958; //RXIX
+    private static final int VERSION = 1;
+    public static final int DEFAULT_STRIDE = 128;
+
+    private final int stride;
+    private final long fileSize;
+    private final long lastModified;
+    private final int[] keys;
+    private final long[] offsets;
+
+    SparseIndex(int stride, long fileSize, long lastModified, int[] keys, long[] offsets) {
+        this.stride = stride;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.keys = keys;
+        this.offsets = offsets;
+    }
+
+    public static void main(String[] args) throws IOException {
+        for (String arg : args) {
+            Path file = Path.of(arg);
+            SparseIndex index = build(file, DEFAULT_STRIDE);
+            index.write(sidecarOf(file));
+            Logger.getLogger("SparseIndex").info(() -> "Indexed %s: %d entries".formatted(file, index.size()));
+        }
+    }
+
+    public static Path sidecarOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    /**
+     * Loads the sidecar index of a file, or builds and writes it if it's missing or stale
+     */
+    public static SparseIndex openOrBuild(Path file, int stride) throws IOException {
+        Path sidecar = sidecarOf(file);
+        if (Files.exists(sidecar)) {
+            SparseIndex index = load(sidecar);
+            if (index.matches(file) && index.stride == stride) {
+                return index;
+            }
+        }
+        SparseIndex index = build(file, stride);
+        index.write(sidecar);
+        return index;
+    }
+
+    /**
+     * Scans a sorted JSON array once, recording the offset of roughly every stride-th element
+     * @param file the file to index
+     * @param stride minimum number of elements between two index entries
+     * @return the index
+     * @throws IllegalStateException if the file isn't sorted by key
+     */
+    public static SparseIndex build(Path file, int stride) throws IOException {
+        if (stride <= 0) {
+            throw new IllegalArgumentException("stride > 0 required but it was " + stride);
+        }
+        long fileSize = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        int[] keys = new int[64];
+        long[] offsets = new long[64];
+        int size = 0;
+        try (JsonParser parser = new JsonFactory().createParser(MappedInputStream.open(file))) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalStateException("Did not start with START_ARRAY token");
+            }
+            long sinceLast = stride;
+            boolean first = true;
+            int previousKey = 0;
+            JsonToken jToken;
+            while ((jToken = parser.nextToken()) == JsonToken.START_OBJECT) {
+                long offset = parser.currentTokenLocation().getByteOffset();
+                int key = readKey(parser);
+                if (!first && key < previousKey) {
+                    throw new IllegalStateException("%s is not sorted: %d came after %d".formatted(file, key, previousKey));
+                }
+                if (sinceLast >= stride && (first || key != previousKey)) {
+                    if (size == keys.length) {
+                        keys = Arrays.copyOf(keys, size * 2);
+                        offsets = Arrays.copyOf(offsets, size * 2);
+                    }
+                    keys[size] = key;
+                    offsets[size] = offset;
+                    size++;
+                    sinceLast = 0;
+                }
+                sinceLast++;
+                previousKey = key;
+                first = false;
+            }
+            if (jToken != JsonToken.END_ARRAY) {
+                throw new IllegalStateException("Expected START_OBJECT token but got %s".formatted(jToken));
+            }
+        }
+        return new SparseIndex(stride, fileSize, lastModified, Arrays.copyOf(keys, size), Arrays.copyOf(offsets, size));
+    }
+
+    /**
+     * Reads the key of the object the parser is on, and leaves the parser on its END_OBJECT
+     */
+    private static int readKey(JsonParser parser) throws IOException {
+        boolean found = false;
+        int key = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (!found) {
+                String name = parser.currentName();
+                if ("id".equals(name)) {
+                    parser.nextToken();
+                    key = parser.getIntValue();
+                    found = true;
+                    continue;
+                } else if (!name.isEmpty() && (Character.isDigit(name.charAt(0)) || name.charAt(0) == '-')) {
+                    key = JSONDecoder.parseIntKey(parser);
+                    found = true;
+                }
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        if (!found) {
+            throw new IllegalStateException("No key found in object at %s".formatted(parser.currentLocation()));
+        }
+        return key;
+    }
+
+    public static SparseIndex load(Path sidecar) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a sparse index: " + sidecar);
+            }
+            int stride = in.readInt();
+            long fileSize = in.readLong();
+            long lastModified = in.readLong();
+            int size = in.readInt();
+            int[] keys = new int[size];
+            long[] offsets = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = in.readInt();
+            }
+            for (int i = 0; i < size; i++) {
+                offsets[i] = in.readLong();
+            }
+            return new SparseIndex(stride, fileSize, lastModified, keys, offsets);
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file next to the sidecar, then moves it over the sidecar, so that a reader never
+     * sees a partially written index, even if the write fails or two builds of the same file race
+     */
+    public void write(Path sidecar) throws IOException {
+        Path temp = Files.createTempFile(sidecar.toAbsolutePath().getParent(), sidecar.getFileName() + ".", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(stride);
+                out.writeLong(fileSize);
+                out.writeLong(lastModified);
+                out.writeInt(keys.length);
+                for (int key : keys) {
+                    out.writeInt(key);
+                }
+                for (long offset : offsets) {
+                    out.writeLong(offset);
+                }
+            }
+            Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if the file still has the size and modification time it had when indexed
+     */
+    public boolean matches(Path file) throws IOException {
+        return Files.size(file) == fileSize && Files.getLastModifiedTime(file).toMillis() == lastModified;
+    }
+
+    /**
+     * @param key the key to seek to
+     * @return the offset of an element at or before the first element with a key >= the given key,
+     * or -1 if the indexed file is empty
+     */
+    public long floorOffset(int key) {
+        if (keys.length == 0) {
+            return -1;
+        }
+        int idx = Arrays.binarySearch(keys, key);
+        if (idx < 0) {
+            //insertion point - 1 is the last entry below the key
+            idx = Math.max(0, -idx - 2);
+        }
+        return offsets[idx];
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * @return a copy of the indexed keys, usable as a sample for {@code KeyRange.fromSample}
+     */
+    public int[] sampleKeys() {
+        return keys.clone();
+    }
+}
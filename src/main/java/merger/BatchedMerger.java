@@ -0,0 +1,102 @@
+package merger;
+
+import metrics.Counter;
+import metrics.Metrics;
+import models.HeavyEquipment;
+import models.KeyedEntry;
+import models.MergedRecord;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Same merge as {@link Merger}, over sources that are decoded in batches, emitting the merged records in chunks.
+ * <p>
+ * For small records, the per-signal cost of every stage (queue offer/poll, request accounting) is higher than the
+ * merge itself. Here every signal carries a batch: the decoders fill their batches on the reader threads, the merge
+ * folds the elements straight out of them, and the records are emitted chunkSize at a time. A chunk is only emitted
+ * once full or once the sources completed, so latency grows with the chunk size.
+ * <pre>{@code
+ * new BatchedMerger(decoder.createBatchReader(main, MERGED_RECORD_TYPEREF, 1024),
+ *         decoder.createKeyedBatchReader(equipment, EQUIPMENT_TYPEREF, 1024),
+ *         decoder.createKeyedBatchReader(materials, String.class, 1024),
+ *         decoder.createKeyedBatchReader(contacts, MergedRecord.PointOfContact.class, 1024))
+ *         .run(BatchedMerger.DEFAULT_CHUNK_SIZE);
+ * }</pre>
+ * @author vibbix
+ */
+public class BatchedMerger {
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+    //every element in flight is a whole batch, so a few are plenty
+    static final int BATCH_PREFETCH = 4;
+
+    private final Flux<? extends List<MergedRecord>> mergedRecordFlux;
+    private final Flux<? extends List<? extends Map.Entry<Integer, ? extends Set<HeavyEquipment>>>> equipmentFlux;
+    private final Flux<? extends List<? extends Map.Entry<Integer, String>>> materialsFlux;
+    private final Flux<? extends List<? extends Map.Entry<Integer, MergedRecord.PointOfContact>>> contactFlux;
+
+    /**
+     * @param mergedRecordFlux batches of main records, sorted by ID across batches
+     * @param equipmentFlux batches of equipment entries, sorted by key across batches
+     * @param materialsFlux batches of material entries, sorted by key across batches
+     * @param contactFlux batches of contact entries, sorted by key across batches
+     */
+    public BatchedMerger(
+            Flux<? extends List<MergedRecord>> mergedRecordFlux,
+            Flux<? extends List<? extends Map.Entry<Integer, ? extends Set<HeavyEquipment>>>> equipmentFlux,
+            Flux<? extends List<? extends Map.Entry<Integer, String>>> materialsFlux,
+            Flux<? extends List<? extends Map.Entry<Integer, MergedRecord.PointOfContact>>> contactFlux) {
+        this.mergedRecordFlux = mergedRecordFlux;
+        this.equipmentFlux = equipmentFlux;
+        this.materialsFlux = materialsFlux;
+        this.contactFlux = contactFlux;
+    }
+
+    /**
+     * @param chunkSize number of records per emitted list
+     * @return the merged records in lists of up to chunkSize, in ID order. IDs only found in the side inputs are
+     * dropped and counted like in {@link Merger#run()}, so a list can come out shorter than chunkSize.
+     */
+    public Flux<List<MergedRecord>> run(int chunkSize) {
+        Counter orphanIds = Metrics.registry().counter("merge.orphanIds");
+        return plan().mergeChunks(chunkSize, BATCH_PREFETCH)
+                .map(builders -> build(builders, orphanIds))
+                .filter(records -> !records.isEmpty());
+    }
+
+    /**
+     * @param chunkSize number of records merged per signal
+     * @return the merged records one by one, in ID order, for consumers that don't take lists
+     */
+    public Flux<MergedRecord> runFlattened(int chunkSize) {
+        return run(chunkSize).flatMapIterable(chunk -> chunk);
+    }
+
+    /**
+     * @return the merge of the 4 sources, in the same field order as {@link Merger#plan()}, with the materials checked
+     * before they're aggregated like there
+     */
+    MergePlan<MergedRecord.Builder> plan() {
+        Counter noOps = Metrics.registry().counter("merge.noOpMarkers");
+        return MergePlan.into(MergedRecord::builder)
+                .batches(mergedRecordFlux, MergedRecord::id, (builder, record) -> builder.apply(record.mutate()))
+                .entryBatches(contactFlux, MergedRecord.Builder::setPointOfContact)
+                .entryBatches(equipmentFlux, (MergedRecord.Builder builder, Set<HeavyEquipment> equipment) ->
+                        Merger.setEquipment(builder, equipment, noOps))
+                .entryBatches(MaterialsAggregator.aggregateBatches(KeyOrder.requireSortedBatches(materialsFlux,
+                        KeyedEntry::keyOf, "materials")), MergedRecord.Builder::setRequiredMaterials);
+    }
+
+    private static List<MergedRecord> build(List<MergedRecord.Builder> builders, Counter orphanIds) {
+        List<MergedRecord> records = new ArrayList<>(builders.size());
+        for (MergedRecord.Builder builder : builders) {
+            if (Merger.hasMainRecord(builder, orphanIds)) {
+                records.add(builder.build());
+            }
+        }
+        return records;
+    }
+}
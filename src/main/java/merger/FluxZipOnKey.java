@@ -0,0 +1,565 @@
+package merger;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.util.annotation.Nullable;
+import reactor.util.concurrent.Queues;
+import reactor.util.context.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Fused "zipOnKey" operator: merges N sources that are each ordered by an int key, and emits exactly one accumulated
+ * value per distinct key.
+ * <p>
+ * Every source gets its own prefetch queue. The sources are kept in a min-heap on the key of their head element, so
+ * picking the next key costs O(log N) instead of scanning every source. The drain loop then pops every source whose head
+ * carries that key, and folds all its elements with that key (including repeated keys inside the same source) into a
+ * single accumulator, in registration order. A key is only emitted once every source has either moved past it or
+ * completed, so no inner {@link Flux} is ever allocated per key, and sources without the key aren't even looked at.
+ * <p>
+ * Each source is bound to its own key extractor and accumulator (see {@link SourceBinding}), so sources of different
+ * element types can be merged without wrapping or inspecting their elements.
+ * <p>
+ * Sources can also deliver their elements in batches ({@link SourceBinding#batched}), and the keys can be emitted in
+ * chunks ({@link #zipOnKeyChunked}), so that queues, requests and {@code onNext} calls are paid per batch instead of per
+ * element.
+ * <p>
+ * Sources <b>must</b> be sorted ascending by key. A key lower than the previous key of the same source terminates the
+ * merge with an {@link IllegalStateException}, see {@link KeyOrder} and {@code binary.ExternalSort} for inputs that
+ * aren't sorted.
+ *
+ * @param <A> the accumulator type, one per key
+ * @param <O> the emitted type, either the accumulator itself or a chunk of accumulators
+ * @author vibbix
+ */
+public final class FluxZipOnKey<A, O> extends Flux<O> {
+    private final List<? extends SourceBinding<A, ?>> sources;
+    private final Supplier<A> seedSupplier;
+    private final int prefetch;
+    private final int chunkSize;
+
+    /**
+     * @param chunkSize number of accumulators per emitted list, or 0 to emit the accumulators themselves
+     */
+    FluxZipOnKey(List<? extends SourceBinding<A, ?>> sources, Supplier<A> seedSupplier, int prefetch, int chunkSize) {
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch > 0 required but it was " + prefetch);
+        }
+        if (chunkSize < 0) {
+            throw new IllegalArgumentException("chunkSize >= 0 required but it was " + chunkSize);
+        }
+        this.sources = sources;
+        this.seedSupplier = seedSupplier;
+        this.prefetch = prefetch;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * A source along with how to read its key, and how to fold its elements into the accumulator
+     * @param source source sorted ascending by key, of elements or of lists of elements when batched
+     * @param batched true if the source emits lists of elements
+     * @param keyExtractor extracts the int key of an element
+     * @param accumulator folds an element into the accumulator
+     * @param <A> the accumulator type
+     * @param <T> the element type of the source
+     */
+    public record SourceBinding<A, T>(Publisher<?> source, boolean batched, ToIntFunction<? super T> keyExtractor,
+                                      BiFunction<A, ? super T, A> accumulator) {
+        public SourceBinding(Publisher<? extends T> source, ToIntFunction<? super T> keyExtractor,
+                             BiFunction<A, ? super T, A> accumulator) {
+            this(source, false, keyExtractor, accumulator);
+        }
+
+        /**
+         * @param batches batches of elements, sorted ascending by key across batches
+         */
+        public static <A, T> SourceBinding<A, T> batched(Publisher<? extends List<? extends T>> batches,
+                                                         ToIntFunction<? super T> keyExtractor,
+                                                         BiFunction<A, ? super T, A> accumulator) {
+            return new SourceBinding<>(batches, true, keyExtractor, accumulator);
+        }
+    }
+
+    /**
+     * Merges the ordered sources on their key, folding all elements sharing a key into one accumulator
+     * @param sources sources, each sorted ascending by key
+     * @param keyExtractor extracts the int key of an element
+     * @param seedSupplier creates a fresh accumulator for every key
+     * @param accumulator folds an element into the accumulator
+     * @param prefetch number of elements requested from each source up front
+     * @return a flux emitting one accumulator per key, in key order
+     */
+    public static <T, A> Flux<A> zipOnKey(List<? extends Publisher<? extends T>> sources,
+                                          ToIntFunction<? super T> keyExtractor,
+                                          Supplier<A> seedSupplier,
+                                          BiFunction<A, ? super T, A> accumulator,
+                                          int prefetch) {
+        List<SourceBinding<A, T>> bindings = new ArrayList<>(sources.size());
+        for (Publisher<? extends T> source : sources) {
+            bindings.add(new SourceBinding<>(source, keyExtractor, accumulator));
+        }
+        return zipOnKey(bindings, seedSupplier, prefetch);
+    }
+
+    /**
+     * Merges ordered sources of possibly different types on their key
+     * @param sources sources, each bound to its own key extractor and accumulator
+     * @param seedSupplier creates a fresh accumulator for every key
+     * @param prefetch number of elements (or batches) requested from each source up front
+     * @return a flux emitting one accumulator per key, in key order
+     */
+    public static <A> Flux<A> zipOnKey(List<? extends SourceBinding<A, ?>> sources, Supplier<A> seedSupplier,
+                                       int prefetch) {
+        if (sources.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.onAssembly(new FluxZipOnKey<A, A>(List.copyOf(sources), seedSupplier, prefetch, 0));
+    }
+
+    /**
+     * Merges ordered sources on their key, emitting the accumulators in lists of chunkSize. A chunk is only emitted
+     * once full, or once every source completed.
+     * @param sources sources, each bound to its own key extractor and accumulator
+     * @param seedSupplier creates a fresh accumulator for every key
+     * @param prefetch number of elements (or batches) requested from each source up front
+     * @param chunkSize number of accumulators per emitted list
+     * @return a flux emitting lists of one accumulator per key, in key order
+     */
+    public static <A> Flux<List<A>> zipOnKeyChunked(List<? extends SourceBinding<A, ?>> sources,
+                                                    Supplier<A> seedSupplier, int prefetch, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize > 0 required but it was " + chunkSize);
+        }
+        if (sources.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.onAssembly(new FluxZipOnKey<A, List<A>>(List.copyOf(sources), seedSupplier, prefetch, chunkSize));
+    }
+
+    public static <T, A> Flux<A> zipOnKey(List<? extends Publisher<? extends T>> sources,
+                                          ToIntFunction<? super T> keyExtractor,
+                                          Supplier<A> seedSupplier,
+                                          BiFunction<A, ? super T, A> accumulator) {
+        return zipOnKey(sources, keyExtractor, seedSupplier, accumulator, Queues.SMALL_BUFFER_SIZE);
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super O> actual) {
+        ZipOnKeyCoordinator<A, O> coordinator = new ZipOnKeyCoordinator<>(actual, sources, seedSupplier, prefetch,
+                chunkSize);
+        actual.onSubscribe(coordinator);
+        coordinator.subscribe();
+    }
+
+    static final class ZipOnKeyCoordinator<A, O> implements Subscription {
+        private final CoreSubscriber<? super O> actual;
+        private final ZipOnKeyInner<A, ?>[] inners;
+        private final Supplier<A> seedSupplier;
+        private final int chunkSize;
+        private final SourceHeap heap;
+        @Nullable
+        private final MergeMetrics metrics;
+
+        //only touched from within drain()
+        private long emitted;
+        private A current;
+        private int currentKey;
+        //sources [0, filled) got their first head, or completed without one
+        private int filled;
+        //source that ran dry in the middle of the current key, resumed first
+        private int stalled = -1;
+        private int groupSize;
+        private boolean contributed;
+        private List<A> chunk;
+
+        volatile int wip;
+        static final AtomicIntegerFieldUpdater<ZipOnKeyCoordinator> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(ZipOnKeyCoordinator.class, "wip");
+
+        volatile long requested;
+        static final AtomicLongFieldUpdater<ZipOnKeyCoordinator> REQUESTED =
+                AtomicLongFieldUpdater.newUpdater(ZipOnKeyCoordinator.class, "requested");
+
+        volatile Throwable error;
+        static final AtomicReferenceFieldUpdater<ZipOnKeyCoordinator, Throwable> ERROR =
+                AtomicReferenceFieldUpdater.newUpdater(ZipOnKeyCoordinator.class, Throwable.class, "error");
+
+        volatile boolean cancelled;
+
+        @SuppressWarnings("unchecked")
+        ZipOnKeyCoordinator(CoreSubscriber<? super O> actual, List<? extends SourceBinding<A, ?>> sources,
+                            Supplier<A> seedSupplier, int prefetch, int chunkSize) {
+            this.actual = actual;
+            this.seedSupplier = seedSupplier;
+            this.chunkSize = chunkSize;
+            this.metrics = MergeMetrics.of(sources.size());
+            this.inners = new ZipOnKeyInner[sources.size()];
+            for (int i = 0; i < inners.length; i++) {
+                this.inners[i] = new ZipOnKeyInner<>(this, i, sources.get(i), prefetch);
+            }
+            this.heap = new SourceHeap(inners);
+        }
+
+        void subscribe() {
+            for (ZipOnKeyInner<A, ?> inner : inners) {
+                if (cancelled) {
+                    return;
+                }
+                inner.subscribe();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                Operators.addCap(REQUESTED, this, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                cancelAll();
+                if (WIP.getAndIncrement(this) == 0) {
+                    clearAll();
+                }
+            }
+        }
+
+        void onInnerError(ZipOnKeyInner<A, ?> inner, Throwable t) {
+            if (Exceptions.addThrowable(ERROR, this, t)) {
+                //the error has to be visible before done, otherwise drain could treat the source as completed
+                if (inner != null) {
+                    inner.done = true;
+                }
+                drain();
+            } else {
+                Operators.onErrorDropped(t, actual.currentContext());
+            }
+        }
+
+        private void cancelAll() {
+            for (ZipOnKeyInner<A, ?> inner : inners) {
+                inner.cancel();
+            }
+        }
+
+        private void clearAll() {
+            current = null;
+            chunk = null;
+            heap.clear();
+            if (metrics != null) {
+                metrics.finish();
+            }
+            for (ZipOnKeyInner<A, ?> inner : inners) {
+                inner.clear();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+            int missed = 1;
+            final ZipOnKeyInner<A, ?>[] inners = this.inners;
+            final int n = inners.length;
+            for (;;) {
+                long r = requested;
+                long e = emitted;
+                outer:
+                for (;;) {
+                    if (cancelled) {
+                        clearAll();
+                        return;
+                    }
+                    if (error != null) {
+                        Throwable ex = Exceptions.terminate(ERROR, this);
+                        cancelAll();
+                        clearAll();
+                        actual.onError(ex);
+                        return;
+                    }
+                    try {
+                        if (current == null) {
+                            //every source needs a head before the first key is known, afterwards the heap holds
+                            //every live source again once a key is done
+                            for (; filled < n; filled++) {
+                                ZipOnKeyInner<A, ?> inner = inners[filled];
+                                boolean done = inner.done;
+                                if (!inner.peek()) {
+                                    if (!done) {
+                                        break outer;
+                                    }
+                                    continue;
+                                }
+                                heap.push(filled);
+                            }
+                            if (heap.isEmpty()) {
+                                if (chunk != null) {
+                                    //the last, partial chunk
+                                    if (e == r) {
+                                        break;
+                                    }
+                                    List<A> last = chunk;
+                                    chunk = null;
+                                    actual.onNext((O) last);
+                                    e++;
+                                }
+                                if (metrics != null) {
+                                    metrics.finish();
+                                }
+                                actual.onComplete();
+                                return;
+                            }
+                            //in chunked mode, a key only starts once there's demand for the chunk it goes in
+                            if (e == r) {
+                                break;
+                            }
+                            currentKey = inners[heap.peek()].headKey;
+                            current = seedSupplier.get();
+                            groupSize = 0;
+                        }
+                        //fold every element carrying the current key, resuming where we stalled last time
+                        if (stalled >= 0) {
+                            if (!foldKey(stalled)) {
+                                break outer;
+                            }
+                            stalled = -1;
+                        }
+                        while (!heap.isEmpty() && inners[heap.peek()].headKey == currentKey) {
+                            if (!foldKey(heap.pop())) {
+                                break outer;
+                            }
+                        }
+                    } catch (Throwable ex) {
+                        Exceptions.throwIfFatal(ex);
+                        onInnerError(null, Operators.onOperatorError(null, ex, null, actual.currentContext()));
+                        continue;
+                    }
+                    if (metrics != null) {
+                        metrics.group(groupSize, inners);
+                    }
+                    A value = current;
+                    current = null;
+                    if (chunkSize == 0) {
+                        actual.onNext((O) value);
+                        e++;
+                        continue;
+                    }
+                    if (chunk == null) {
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                    chunk.add(value);
+                    if (chunk.size() == chunkSize) {
+                        List<A> full = chunk;
+                        chunk = null;
+                        actual.onNext((O) full);
+                        e++;
+                    }
+                }
+                emitted = e;
+                missed = WIP.addAndGet(this, -missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Folds the elements of a source carrying the current key, and puts it back in the heap once it moved past it
+         * @return false if the source ran dry before moving past the key, in which case it's remembered as stalled
+         */
+        private boolean foldKey(int index) {
+            ZipOnKeyInner<A, ?> inner = inners[index];
+            for (;;) {
+                boolean done = inner.done;
+                if (!inner.peek()) {
+                    if (!done) {
+                        stalled = index;
+                        return false;
+                    }
+                    break;
+                }
+                if (inner.headKey != currentKey) {
+                    heap.push(index);
+                    break;
+                }
+                current = inner.fold(current);
+                groupSize++;
+                contributed = true;
+            }
+            if (contributed && metrics != null) {
+                metrics.present(index);
+            }
+            contributed = false;
+            return true;
+        }
+    }
+
+    static final class ZipOnKeyInner<A, T> implements CoreSubscriber<Object> {
+        private final ZipOnKeyCoordinator<A, ?> parent;
+        private final int index;
+        private final Publisher<?> source;
+        private final boolean batched;
+        private final ToIntFunction<? super T> keyExtractor;
+        private final BiFunction<A, ? super T, A> accumulator;
+        private final int prefetch;
+        private final int limit;
+        //elements, or lists of elements when batched
+        private final Queue<Object> queue;
+
+        //only touched from within the parent's drain()
+        T head;
+        int headKey;
+        private int lastKey = Integer.MIN_VALUE;
+        private int produced;
+        private List<? extends T> batch;
+        private int batchIndex;
+
+        volatile boolean done;
+
+        volatile Subscription s;
+        static final AtomicReferenceFieldUpdater<ZipOnKeyInner, Subscription> S =
+                AtomicReferenceFieldUpdater.newUpdater(ZipOnKeyInner.class, Subscription.class, "s");
+
+        ZipOnKeyInner(ZipOnKeyCoordinator<A, ?> parent, int index, SourceBinding<A, T> binding, int prefetch) {
+            this.parent = parent;
+            this.index = index;
+            this.source = binding.source();
+            this.batched = binding.batched();
+            this.keyExtractor = binding.keyExtractor();
+            this.accumulator = binding.accumulator();
+            this.prefetch = prefetch;
+            this.limit = prefetch - (prefetch >> 2);
+            this.queue = Queues.get(prefetch).get();
+        }
+
+        void subscribe() {
+            source.subscribe(this);
+        }
+
+        @Override
+        public Context currentContext() {
+            return parent.actual.currentContext();
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (Operators.setOnce(S, this, s)) {
+                s.request(prefetch);
+            }
+        }
+
+        @Override
+        public void onNext(Object t) {
+            if (!queue.offer(t)) {
+                onError(Exceptions.failWithOverflow("Queue is full: Reactive Streams source doesn't respect backpressure"));
+                return;
+            }
+            parent.drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            parent.onInnerError(this, t);
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            parent.drain();
+        }
+
+        /**
+         * Makes sure {@link #head} is populated if anything is queued
+         * @return true if a head element is available
+         * @throws IllegalStateException if the new head is out of key order
+         */
+        @SuppressWarnings("unchecked")
+        boolean peek() {
+            if (head != null) {
+                return true;
+            }
+            T next;
+            for (;;) {
+                if (batch != null) {
+                    next = batch.get(batchIndex++);
+                    if (batchIndex == batch.size()) {
+                        batch = null;
+                    }
+                    break;
+                }
+                Object polled = queue.poll();
+                if (polled == null) {
+                    return false;
+                }
+                replenish();
+                if (!batched) {
+                    next = (T) polled;
+                    break;
+                }
+                List<? extends T> polledBatch = (List<? extends T>) polled;
+                if (!polledBatch.isEmpty()) {
+                    batch = polledBatch;
+                    batchIndex = 0;
+                }
+            }
+            head = next;
+            headKey = keyExtractor.applyAsInt(next);
+            if (headKey < lastKey) {
+                throw KeyOrder.unsorted("Source " + index, headKey, lastKey);
+            }
+            lastKey = headKey;
+            return true;
+        }
+
+        /**
+         * Folds the head into the accumulator and moves past it
+         */
+        A fold(A current) {
+            A next = accumulator.apply(current, head);
+            head = null;
+            return next;
+        }
+
+        /**
+         * Requests more once three quarters of the prefetch ({@code limit}) have been taken off the queue
+         */
+        private void replenish() {
+            if (++produced == limit) {
+                produced = 0;
+                s.request(limit);
+            }
+        }
+
+        int queueSize() {
+            return queue.size();
+        }
+
+        void cancel() {
+            Operators.terminate(S, this);
+        }
+
+        void clear() {
+            head = null;
+            batch = null;
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package merger;
+
+import binary.BinaryFiles;
+import binary.Codecs;
+import com.fasterxml.jackson.core.type.TypeReference;
+import json.JSONDecoder;
+import metrics.Counter;
+import metrics.Metrics;
+import models.HashedRecord;
+import models.HeavyEquipment;
+import models.MergedRecord;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.annotation.Nullable;
+import sink.RecordSink;
+import sink.SinkStats;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Merges delta files into the merged output of the previous run, and emits only the records that changed.
+ * <p>
+ * The previous output is kept as a state file of {@link HashedRecord}s sorted by ID. It is merged with the deltas as
+ * one more ordered source, so IDs without any delta are passed through without being rebuilt or re-hashed. For an ID
+ * with deltas, the previous record is reopened with {@link MergedRecord#mutate()}, only the fields carried by the
+ * deltas are replaced, and the record is emitted if its content hash moved.
+ * <p>
+ * The state itself is still a full pass: {@link #run()} reads every record of the state file, and writes every one of
+ * them to the new state with their stored hash. That pass is sequential binary I/O, only the merge of the deltas and the
+ * JSON output scale with the number of changed IDs.
+ * <p>
+ * Each delta holds the complete new value of a field for every ID it mentions: a main delta replaces the site name and
+ * address, a contact or equipment delta replaces the contact or equipment, and a materials delta replaces all the
+ * materials of its IDs. Deletes aren't supported. Running against a missing state file with the full inputs as deltas
+ * creates the initial state.
+ * @author vibbix
+ */
+public final class IncrementalMerger {
+    private static final TypeReference<MergedRecord> MERGED_RECORD_TYPEREF = new TypeReference<>() {};
+    private static final TypeReference<EnumSet<HeavyEquipment>> EQUIPMENT_TYPEREF = new TypeReference<>() {};
+
+    private final Path stateFile;
+    private final Flux<MergedRecord> mainDelta;
+    private final Flux<? extends Map.Entry<Integer, ? extends Set<HeavyEquipment>>> equipmentDelta;
+    private final Flux<? extends Map.Entry<Integer, String>> materialsDelta;
+    private final Flux<? extends Map.Entry<Integer, MergedRecord.PointOfContact>> contactDelta;
+
+    /**
+     * @param stateFile state written by the previous run, which may not exist yet
+     * @param mainDelta changed main records, sorted by ID
+     * @param equipmentDelta changed equipment, sorted by ID
+     * @param materialsDelta changed materials, sorted by ID
+     * @param contactDelta changed contacts, sorted by ID
+     */
+    public IncrementalMerger(Path stateFile, Flux<MergedRecord> mainDelta,
+                             Flux<? extends Map.Entry<Integer, ? extends Set<HeavyEquipment>>> equipmentDelta,
+                             Flux<? extends Map.Entry<Integer, String>> materialsDelta,
+                             Flux<? extends Map.Entry<Integer, MergedRecord.PointOfContact>> contactDelta) {
+        this.stateFile = stateFile;
+        this.mainDelta = mainDelta;
+        this.equipmentDelta = equipmentDelta;
+        this.materialsDelta = materialsDelta;
+        this.contactDelta = contactDelta;
+    }
+
+    /**
+     * A record of the new state, and whether the deltas changed it
+     */
+    public record Update(HashedRecord current, boolean changed) {
+    }
+
+    /**
+     * Merges the deltas into the state, without writing anything
+     * @return every record of the new state in ID order, flagged when it changed
+     */
+    public Flux<Update> updates() {
+        Flux<HashedRecord> state = Flux.defer(() -> Files.exists(stateFile)
+                ? BinaryFiles.read(stateFile, Codecs.HASHED_RECORD)
+                : Flux.empty());
+        Counter changed = Metrics.registry().counter("merge.incremental.changed");
+        Counter unchanged = Metrics.registry().counter("merge.incremental.unchanged");
+        Counter orphanIds = Metrics.registry().counter("merge.orphanIds");
+        //the state comes first, so the deltas are applied on top of the previous record
+        return MergePlan.into(Change::new)
+                .source(state, HashedRecord::id, Change::previous)
+                .source(mainDelta, MergedRecord::id, Change::main)
+                .source(contactDelta, MergePlan::keyOf, Change::contact)
+                .source(equipmentDelta, MergePlan::keyOf, Change::equipment)
+                .source(MaterialsAggregator.aggregate(KeyOrder.requireSorted(materialsDelta, MergePlan::keyOf,
+                        "materials delta")), MergePlan::keyOf, Change::materials)
+                .merge()
+                .handle((change, sink) -> {
+                    Update update = change.finish();
+                    if (update == null) {
+                        orphanIds.increment();
+                        return;
+                    }
+                    (update.changed() ? changed : unchanged).increment();
+                    sink.next(update);
+                });
+    }
+
+    /**
+     * Merges the deltas into the state, and replaces the state file once every record has been written
+     * @return the records that changed, in ID order
+     */
+    public Flux<MergedRecord> run() {
+        return Flux.defer(() -> {
+            Path next = stateFile.resolveSibling(stateFile.getFileName() + ".next");
+            return updates().publish(shared -> {
+                //the state file is only swapped after the merge completed, as it's read until then
+                Mono<MergedRecord> commit = BinaryFiles.write(shared.map(Update::current), next, Codecs.HASHED_RECORD)
+                        .then(Mono.fromCallable(() -> Files.move(next, stateFile,
+                                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)))
+                        .then(Mono.empty());
+                return shared.filter(Update::changed)
+                        .map(update -> update.current().record())
+                        .mergeWith(commit);
+            });
+        });
+    }
+
+    /**
+     * Accumulator of one ID. The builder is only created once a delta touches the ID.
+     */
+    private static final class Change {
+        @Nullable
+        private HashedRecord previous;
+        @Nullable
+        private MergedRecord.Builder builder;
+        private boolean hasMain;
+
+        void previous(HashedRecord previous) {
+            this.previous = previous;
+        }
+
+        void main(MergedRecord record) {
+            //only the site fields, a main delta doesn't say anything about the others
+            hasMain = true;
+            builder()
+                    .setID(record.id())
+                    .setSiteName(record.siteName())
+                    .setAddress(record.address());
+        }
+
+        void contact(Map.Entry<Integer, MergedRecord.PointOfContact> entry) {
+            builder().setPointOfContact(entry.getValue());
+        }
+
+        void equipment(Map.Entry<Integer, ? extends Set<HeavyEquipment>> entry) {
+            builder().setRequiredEquipment(entry.getValue());
+        }
+
+        void materials(Map.Entry<Integer, Map<String, Long>> entry) {
+            builder().setRequiredMaterials(entry.getValue());
+        }
+
+        private MergedRecord.Builder builder() {
+            if (builder == null) {
+                builder = previous != null ? previous.record().mutate() : MergedRecord.builder();
+            }
+            return builder;
+        }
+
+        /**
+         * @return the update of the ID, or null for an ID neither the state nor the main delta has, which is dropped
+         * like {@link Merger#run()} drops IDs only found in the side inputs
+         */
+        @Nullable
+        Update finish() {
+            if (builder == null) {
+                return new Update(previous, false);
+            }
+            if (previous == null && !hasMain) {
+                return null;
+            }
+            MergedRecord record = builder.build();
+            long contentHash = HashedRecord.hashOf(record);
+            if (previous != null && previous.contentHash() == contentHash) {
+                return new Update(previous, false);
+            }
+            return new Update(new HashedRecord(record, contentHash), true);
+        }
+    }
+
+    /**
+     * Merges a folder of JSON deltas ({@code main.json, poc.json, equipment.json, materials.json}, each optional) into
+     * a state file, and logs or writes out the changed records
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: IncrementalMerger <state file> <delta folder> [output folder]");
+        }
+        Path stateFile = Path.of(args[0]);
+        Path deltas = Path.of(args[1]);
+        JSONDecoder decoder = new JSONDecoder();
+        IncrementalMerger merger = new IncrementalMerger(stateFile,
+                delta(deltas.resolve("main.json"), file -> decoder.createFluxReader(file, MERGED_RECORD_TYPEREF)),
+                delta(deltas.resolve("equipment.json"), file -> decoder.createKeyedFluxReader(file, EQUIPMENT_TYPEREF)),
+                delta(deltas.resolve("materials.json"), file -> decoder.createKeyedFluxReader(file, String.class)),
+                delta(deltas.resolve("poc.json"),
+                        file -> decoder.createKeyedFluxReader(file, MergedRecord.PointOfContact.class)));
+        if (args.length > 2) {
+            SinkStats stats = new RecordSink(Path.of(args[2]), "changed")
+                    .write(merger.run())
+                    .block();
+            Logger.getLogger("IncrementalMerger").info(() -> String.valueOf(stats));
+        } else {
+            merger.run()
+                    .log("changed")
+                    .blockLast();
+        }
+    }
+
+    private static <T> Flux<T> delta(Path file, Function<Path, Flux<T>> reader) {
+        return Files.exists(file) ? reader.apply(file) : Flux.empty();
+    }
+}
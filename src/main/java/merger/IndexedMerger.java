@@ -0,0 +1,150 @@
+package merger;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import json.JSONDecoder;
+import json.SparseIndex;
+import models.HeavyEquipment;
+import models.MergedRecord;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Merges key ranges of a folder of JSON inputs ({@code main.json, poc.json, equipment.json, materials.json}) by seeking
+ * into each file with its {@link SparseIndex}, instead of reading the files from the start.
+ * <p>
+ * Indexes are loaded from their sidecar files, or built when missing. They are checked against their file before every
+ * merge, and rebuilt when the file changed. {@link #partition(int)} splits a full merge into ranges read in parallel.
+ */
+public final class IndexedMerger {
+    private static final TypeReference<MergedRecord> MERGED_RECORD_TYPEREF = new TypeReference<>() {};
+    private static final TypeReference<EnumSet<HeavyEquipment>> EQUIPMENT_TYPEREF = new TypeReference<>() {};
+
+    private final JSONDecoder decoder;
+    private final int stride;
+    private final Path main;
+    private final Path equipment;
+    private final Path materials;
+    private final Path contacts;
+    private volatile SparseIndex mainIndex;
+    private volatile SparseIndex equipmentIndex;
+    private volatile SparseIndex materialsIndex;
+    private volatile SparseIndex contactsIndex;
+
+    private IndexedMerger(JSONDecoder decoder, Path folder, int stride) throws IOException {
+        this.decoder = decoder;
+        this.stride = stride;
+        this.main = folder.resolve("main.json");
+        this.equipment = folder.resolve("equipment.json");
+        this.materials = folder.resolve("materials.json");
+        this.contacts = folder.resolve("poc.json");
+        this.mainIndex = SparseIndex.openOrBuild(main, stride);
+        this.equipmentIndex = SparseIndex.openOrBuild(equipment, stride);
+        this.materialsIndex = SparseIndex.openOrBuild(materials, stride);
+        this.contactsIndex = SparseIndex.openOrBuild(contacts, stride);
+    }
+
+    public static IndexedMerger open(JSONDecoder decoder, Path folder) throws IOException {
+        return open(decoder, folder, SparseIndex.DEFAULT_STRIDE);
+    }
+
+    /**
+     * @param decoder decoder to read the files with
+     * @param folder folder holding the 4 sorted input files
+     * @param stride number of elements per index entry, for indexes that need to be built
+     */
+    public static IndexedMerger open(JSONDecoder decoder, Path folder, int stride) throws IOException {
+        return new IndexedMerger(decoder, folder, stride);
+    }
+
+    /**
+     * @return the input files, in the order of {@link Merger}'s sources
+     */
+    public List<Path> files() {
+        return List.of(main, equipment, materials, contacts);
+    }
+
+    /**
+     * @param range the keys to merge
+     * @return a merger reading only the keys in range from each file
+     * @throws IOException if a changed file couldn't be re-indexed
+     */
+    public Merger restrict(KeyRange range) throws IOException {
+        refresh();
+        return seek(range);
+    }
+
+    /**
+     * Splits the merge into key ranges holding about the same number of main records, sampled from the main index.
+     * Every partition seeks into each file at its range, so the files are read about once in total, however many
+     * partitions there are.
+     * @param partitions number of partitions wanted
+     * @return a merger running the partitions in parallel
+     * @throws IOException if a changed file couldn't be re-indexed
+     */
+    public PartitionedMerger partition(int partitions) throws IOException {
+        refresh();
+        return new PartitionedMerger(KeyRange.fromSample(mainIndex.sampleKeys(), partitions), this::seek);
+    }
+
+    /**
+     * @return a merger over the keys in range, seeking with the indexes as they were last refreshed
+     */
+    private Merger seek(KeyRange range) {
+        return new Merger(
+                decoder.createRangeReader(main, mainIndex, MERGED_RECORD_TYPEREF, MergedRecord::id,
+                        range.from(), range.to()),
+                decoder.createKeyedRangeReader(equipment, equipmentIndex, EQUIPMENT_TYPEREF, range.from(), range.to()),
+                decoder.createKeyedRangeReader(materials, materialsIndex, String.class, range.from(), range.to()),
+                decoder.createKeyedRangeReader(contacts, contactsIndex, MergedRecord.PointOfContact.class,
+                        range.from(), range.to()));
+    }
+
+    /**
+     * A changed file gets re-indexed before the lookup, which is a blocking scan of the file, so the indexes are
+     * checked on the bounded elastic scheduler rather than on the subscriber's thread
+     * @return the merged record of the ID, or empty if main.json doesn't have it
+     */
+    public Mono<MergedRecord> get(int id) {
+        return Mono.fromCallable(() -> restrict(new KeyRange(id, id)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(merger -> merger.run().next());
+    }
+
+    /**
+     * Rebuilds the indexes of the files that changed. Only one thread rebuilds at a time, concurrent callers wait for
+     * it and then find the indexes fresh, instead of each scanning the same file again.
+     */
+    private void refresh() throws IOException {
+        if (isFresh()) {
+            return;
+        }
+        synchronized (this) {
+            rebuildStale();
+        }
+    }
+
+    private boolean isFresh() throws IOException {
+        return mainIndex.matches(main) && equipmentIndex.matches(equipment) && materialsIndex.matches(materials)
+                && contactsIndex.matches(contacts);
+    }
+
+    private void rebuildStale() throws IOException {
+        if (!mainIndex.matches(main)) {
+            mainIndex = SparseIndex.openOrBuild(main, stride);
+        }
+        if (!equipmentIndex.matches(equipment)) {
+            equipmentIndex = SparseIndex.openOrBuild(equipment, stride);
+        }
+        if (!materialsIndex.matches(materials)) {
+            materialsIndex = SparseIndex.openOrBuild(materials, stride);
+        }
+        if (!contactsIndex.matches(contacts)) {
+            contactsIndex = SparseIndex.openOrBuild(contacts, stride);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package merger;
+
+import reactor.core.publisher.Flux;
+import reactor.util.annotation.Nullable;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Checks that sources are sorted by key, which {@link FluxZipOnKey} and {@link MaterialsAggregator} rely on
+ * @author vibbix
+ */
+public final class KeyOrder {
+    private KeyOrder() {
+    }
+
+    /**
+     * Fails fast with an {@link IllegalStateException} on the first key that is lower than the one before it.
+     * Repeated keys are fine. {@link Merger} and {@link IncrementalMerger} put it in front of the materials
+     * aggregation, the other sources are checked by zipOnKey itself.
+     * @param source source to check
+     * @param keyExtractor extracts the int key of an element
+     * @param name name of the source, for the error message
+     * @return the source, erroring instead of emitting an out of order element
+     */
+    public static <T> Flux<T> requireSorted(Flux<T> source, ToIntFunction<? super T> keyExtractor, String name) {
+        return Flux.defer(() -> {
+            LastKey last = new LastKey();
+            return source.handle((value, sink) -> {
+                IllegalStateException unsorted = last.advance(keyExtractor.applyAsInt(value), name);
+                if (unsorted != null) {
+                    sink.error(unsorted);
+                    return;
+                }
+                sink.next(value);
+            });
+        });
+    }
+
+    /**
+     * Same as {@link #requireSorted(Flux, ToIntFunction, String)} for batches, checking the keys within and across
+     * batches. {@link BatchedMerger} puts it in front of the batched materials aggregation.
+     * @param source batches to check
+     * @param keyExtractor extracts the int key of an element
+     * @param name name of the source, for the error message
+     * @return the batches, erroring instead of emitting a batch holding an out of order element
+     */
+    public static <T> Flux<List<? extends T>> requireSortedBatches(Flux<? extends List<? extends T>> source,
+                                                                  ToIntFunction<? super T> keyExtractor, String name) {
+        return Flux.defer(() -> {
+            LastKey last = new LastKey();
+            return source.<List<? extends T>>handle((batch, sink) -> {
+                for (T value : batch) {
+                    IllegalStateException unsorted = last.advance(keyExtractor.applyAsInt(value), name);
+                    if (unsorted != null) {
+                        sink.error(unsorted);
+                        return;
+                    }
+                }
+                sink.next(batch);
+            });
+        });
+    }
+
+    static IllegalStateException unsorted(String name, int key, int previous) {
+        return new IllegalStateException("%s is not sorted by key: %d came after %d".formatted(name, key, previous));
+    }
+
+    private static final class LastKey {
+        private boolean seen;
+        private int key;
+
+        /**
+         * @return the failure if key is lower than the last one, otherwise null once key became the last one
+         */
+        @Nullable
+        IllegalStateException advance(int key, String name) {
+            if (seen && key < this.key) {
+                return unsorted(name, key, this.key);
+            }
+            seen = true;
+            this.key = key;
+            return null;
+        }
+    }
+}
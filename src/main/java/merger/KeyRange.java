@@ -0,0 +1,87 @@
+package merger;
+
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Inclusive range of merge keys, used to split a merge into independent partitions.
+ * @param from first key in the range
+ * @param to last key in the range
+ */
+public record KeyRange(int from, int to) {
+    public static final KeyRange ALL = new KeyRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    public KeyRange {
+        if (from > to) {
+            throw new IllegalArgumentException("from (%d) > to (%d)".formatted(from, to));
+        }
+    }
+
+    public boolean contains(int key) {
+        return key >= from && key <= to;
+    }
+
+    /**
+     * Restricts a source sorted by key to the keys in this range. The source is cancelled as soon as it moves past
+     * the end of the range, but everything before the range is still read and dropped.
+     * @param source source, sorted ascending by key
+     * @param keyExtractor extracts the key of an element
+     * @return the elements of the source within this range
+     */
+    public <T> Flux<T> restrict(Flux<T> source, ToIntFunction<? super T> keyExtractor) {
+        if (this.equals(ALL)) {
+            return source;
+        }
+        return source.skipWhile(value -> keyExtractor.applyAsInt(value) < from)
+                .takeWhile(value -> keyExtractor.applyAsInt(value) <= to);
+    }
+
+    /**
+     * Splits [from, to] into n ranges of (nearly) equal width
+     */
+    public static List<KeyRange> split(int from, int to, int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n > 0 required but it was " + n);
+        }
+        long width = (long) to - from + 1;
+        int parts = (int) Math.min(n, width);
+        List<KeyRange> ranges = new ArrayList<>(parts);
+        long start = from;
+        for (int i = 1; i <= parts; i++) {
+            long end = from + (width * i) / parts - 1;
+            ranges.add(new KeyRange((int) start, (int) end));
+            start = end + 1;
+        }
+        return ranges;
+    }
+
+    /**
+     * Splits the whole key space into at most n ranges, holding roughly the same number of sampled keys each.
+     * The first and last range are left open-ended, so keys outside the sample still land in a partition.
+     * @param sample sampled keys, in any order
+     * @param n number of ranges wanted
+     */
+    public static List<KeyRange> fromSample(int[] sample, int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n > 0 required but it was " + n);
+        }
+        int[] sorted = sample.clone();
+        Arrays.sort(sorted);
+        List<KeyRange> ranges = new ArrayList<>(n);
+        long start = Integer.MIN_VALUE;
+        for (int i = 1; i < n && sorted.length > 0; i++) {
+            //every boundary key starts a new range, skip duplicate boundaries from skewed samples
+            long boundary = sorted[(int) ((long) sorted.length * i / n)];
+            if (boundary > start) {
+                ranges.add(new KeyRange((int) start, (int) (boundary - 1)));
+                start = boundary;
+            }
+        }
+        ranges.add(new KeyRange((int) start, Integer.MAX_VALUE));
+        return ranges;
+    }
+}
@@ -0,0 +1,130 @@
+package merger;
+
+import models.KeyedEntry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the materials of each key in a key-sorted materials stream, in a single fused stage.
+ * <p>
+ * Material names are dictionary coded on first sight, and the counts of the current key are kept in a reused
+ * {@code int[]} indexed by code, so nothing is allocated per row. Only when the key changes is a map of the counts
+ * materialized, sized exactly, and handed downstream. One aggregator is created per subscription.
+ * @author vibbix
+ */
+final class MaterialsAggregator {
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private String[] names = new String[16];
+    private int[] counts = new int[16];
+    //codes with a non-zero count for the current key, in order of appearance
+    private int[] touched = new int[16];
+    private int touchedSize;
+    private int key;
+
+    /**
+     * @param materials materials sorted (or at least grouped) by key
+     * @return the material counts of each key, in the order the keys appear
+     */
+    static Flux<Map.Entry<Integer, Map<String, Long>>> aggregate(Flux<? extends Map.Entry<Integer, String>> materials) {
+        return Flux.defer(() -> {
+            MaterialsAggregator aggregator = new MaterialsAggregator();
+            return materials.<Map.Entry<Integer, Map<String, Long>>>handle((entry, sink) -> {
+                        Map.Entry<Integer, Map<String, Long>> completed = aggregator.add(KeyedEntry.keyOf(entry),
+                                entry.getValue());
+                        if (completed != null) {
+                            sink.next(completed);
+                        }
+                    })
+                    .concatWith(Mono.fromSupplier(aggregator::finish));
+        });
+    }
+
+    /**
+     * Same as {@link #aggregate(Flux)}, batch in batch out: every batch of rows becomes the batch of keys it completed,
+     * and batches completing no key aren't emitted at all
+     * @param materials batches of materials sorted (or at least grouped) by key
+     * @return batches of the material counts of each key, in the order the keys appear
+     */
+    static Flux<List<Map.Entry<Integer, Map<String, Long>>>> aggregateBatches(
+            Flux<? extends List<? extends Map.Entry<Integer, String>>> materials) {
+        return Flux.defer(() -> {
+            MaterialsAggregator aggregator = new MaterialsAggregator();
+            return materials.<List<Map.Entry<Integer, Map<String, Long>>>>handle((batch, sink) -> {
+                        List<Map.Entry<Integer, Map<String, Long>>> completed = new ArrayList<>();
+                        for (Map.Entry<Integer, String> entry : batch) {
+                            Map.Entry<Integer, Map<String, Long>> counts =
+                                    aggregator.add(KeyedEntry.keyOf(entry), entry.getValue());
+                            if (counts != null) {
+                                completed.add(counts);
+                            }
+                        }
+                        if (!completed.isEmpty()) {
+                            sink.next(completed);
+                        }
+                    })
+                    .concatWith(Mono.fromSupplier(() -> {
+                        Map.Entry<Integer, Map<String, Long>> last = aggregator.finish();
+                        return last == null ? null : List.of(last);
+                    }));
+        });
+    }
+
+    /**
+     * @return the counts of the previous key if this row starts a new key, otherwise null
+     */
+    Map.Entry<Integer, Map<String, Long>> add(int key, String material) {
+        Map.Entry<Integer, Map<String, Long>> completed = null;
+        if (touchedSize != 0 && key != this.key) {
+            completed = finish();
+        }
+        this.key = key;
+        int code = codeOf(material);
+        if (counts[code]++ == 0) {
+            if (touchedSize == touched.length) {
+                touched = Arrays.copyOf(touched, touchedSize * 2);
+            }
+            touched[touchedSize++] = code;
+        }
+        return completed;
+    }
+
+    /**
+     * @return the counts of the current key, or null if there is none; resets the counters either way
+     */
+    Map.Entry<Integer, Map<String, Long>> finish() {
+        if (touchedSize == 0) {
+            return null;
+        }
+        //HashMap.newHashMap sizes the table so the entries never trigger a resize
+        Map<String, Long> materials = HashMap.newHashMap(touchedSize);
+        for (int i = 0; i < touchedSize; i++) {
+            int code = touched[i];
+            materials.put(names[code], (long) counts[code]);
+            counts[code] = 0;
+        }
+        touchedSize = 0;
+        return Map.entry(key, materials);
+    }
+
+    private int codeOf(String material) {
+        Integer code = dictionary.get(material);
+        if (code != null) {
+            return code;
+        }
+        int next = dictionary.size();
+        if (next == names.length) {
+            names = Arrays.copyOf(names, next * 2);
+            counts = Arrays.copyOf(counts, next * 2);
+        }
+        //keep one instance per name, the decoded strings of every row are garbage right away
+        names[next] = material;
+        dictionary.put(material, next);
+        return next;
+    }
+}
@@ -1,5 +1,8 @@
 package merger;
 
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.MetricsRegistry;
 import models.HeavyEquipment;
 import models.MergedRecord;
 import reactor.util.annotation.NonNull;
@@ -47,22 +50,30 @@ public sealed interface MergeMarker<T> permits MergeMarker.FieldApplier, MergeMa
                         yield new FieldApplier<>((Map.Entry<Integer, Set<HeavyEquipment>>) entry,
                                 MergedRecord.Builder::setRequiredEquipment);
                     }
-                    yield new NoOpMarker((Map.Entry<Integer,?>)entry);
+                    yield noOp(entry);
                 }
                 case Map map -> {
                     if (!map.isEmpty()) {
                         yield new FieldApplier<>((Map.Entry<Integer, Map<String,Long>>) entry,
                                 MergedRecord.Builder::setRequiredMaterials);
                     }
-                    yield new NoOpMarker((Map.Entry<Integer,?>)entry);
+                    yield noOp(entry);
                 }
                 //case null -> throw new NullPointerException("Value type is null");
-                default -> new NoOpMarker((Map.Entry<Integer,?>)entry);
+                default -> noOp(entry);
             };
             default -> throw new IllegalStateException("Unmatched type: %s".formatted(inType));
         };
     }
 
+    /**
+     * Entries with nothing to apply, counted as {@code merge.noOpMarkers}
+     */
+    private static MergeMarker<?> noOp(Map.Entry<?, ?> entry) {
+        NoOpMarker.counter().increment();
+        return new NoOpMarker((Map.Entry<Integer,?>)entry);
+    }
+
     final class FieldApplier<T> implements MergeMarker<T> {
         private final Map.Entry<Integer, T> entry;
         private final BiConsumer<MergedRecord.Builder, T> applyFn;
@@ -114,8 +125,24 @@ public sealed interface MergeMarker<T> permits MergeMarker.FieldApplier, MergeMa
     }
 
     final class NoOpMarker implements MergeMarker<Void> {
+        private record Meter(MetricsRegistry registry, Counter noOpMarkers) {
+        }
+
+        //merge.noOpMarkers of the installed registry, only looked up again when another registry gets installed
+        private static volatile Meter meter = new Meter(MetricsRegistry.NOOP, Counter.NOOP);
+
         private final int key;
 
+        static Counter counter() {
+            MetricsRegistry registry = Metrics.registry();
+            Meter current = meter;
+            if (current.registry() != registry) {
+                current = new Meter(registry, registry.counter("merge.noOpMarkers"));
+                meter = current;
+            }
+            return current.noOpMarkers();
+        }
+
         public NoOpMarker(int key) {
             this.key = key;
         }
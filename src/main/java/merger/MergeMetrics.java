@@ -0,0 +1,75 @@
+package merger;
+
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Metrics;
+import metrics.MetricsRegistry;
+import reactor.util.annotation.Nullable;
+
+/**
+ * Meters of one zipOnKey subscription: {@code merge.keys}, {@code merge.groupSize}, and per source
+ * {@code merge.source.<i>.missing} (keys the source had nothing for) and {@code merge.source.<i>.queueDepth}.
+ * <p>
+ * Only touched from within the drain loop, queue depths are sampled every {@value #QUEUE_SAMPLE_INTERVAL} keys. The
+ * drain loop never visits sources that don't have the current key, so only the keys each source did have are tallied,
+ * and the missing counters get the difference once the merge terminates.
+ */
+final class MergeMetrics {
+    private static final int QUEUE_SAMPLE_INTERVAL = 1024;
+
+    private final Counter keys;
+    private final Histogram groupSize;
+    private final Counter[] missing;
+    private final Histogram[] queueDepth;
+    private final long[] present;
+    private long groups;
+    private boolean finished;
+
+    private MergeMetrics(MetricsRegistry registry, int sources) {
+        this.keys = registry.counter("merge.keys");
+        this.groupSize = registry.histogram("merge.groupSize");
+        this.missing = new Counter[sources];
+        this.queueDepth = new Histogram[sources];
+        this.present = new long[sources];
+        for (int i = 0; i < sources; i++) {
+            missing[i] = registry.counter("merge.source." + i + ".missing");
+            queueDepth[i] = registry.histogram("merge.source." + i + ".queueDepth");
+        }
+    }
+
+    /**
+     * @return the meters for a merge of n sources, or null when metrics are disabled
+     */
+    @Nullable
+    static MergeMetrics of(int sources) {
+        MetricsRegistry registry = Metrics.registry();
+        return registry.isEnabled() ? new MergeMetrics(registry, sources) : null;
+    }
+
+    void present(int source) {
+        present[source]++;
+    }
+
+    /**
+     * Adds the keys each source didn't have to its missing counter, only once per merge
+     */
+    void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        for (int i = 0; i < present.length; i++) {
+            missing[i].add(groups - present[i]);
+        }
+    }
+
+    void group(int size, FluxZipOnKey.ZipOnKeyInner<?, ?>[] inners) {
+        keys.increment();
+        groupSize.record(size);
+        if (groups++ % QUEUE_SAMPLE_INTERVAL == 0) {
+            for (int i = 0; i < inners.length; i++) {
+                queueDepth[i].record(inners[i].queueSize());
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package merger;
+
+import models.KeyedEntry;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.util.concurrent.Queues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Typed description of a keyed merge: every source is registered once with its key extractor and the setter that
+ * folds its elements into the accumulator.
+ * <p>
+ * This replaces wrapping every element into a {@link MergeMarker} and pattern matching on its runtime type: each
+ * registered source becomes a {@link FluxZipOnKey.SourceBinding}, so the element types are checked at compile time
+ * and nothing is inspected or cast per element. Any number of sources can be registered, picking the next key costs
+ * O(log N) in the number of sources.
+ * <p>
+ * Each key extractor and setter is wrapped in its own {@link SourceApplier} class, so its call site stays monomorphic
+ * and the setter inlines, no matter how many other sources the plan has.
+ * <pre>{@code
+ * MergePlan.into(MergedRecord::builder)
+ *         .source(records, MergedRecord::id, (builder, record) -> builder.apply(record.mutate()))
+ *         .entries(contacts, MergedRecord.Builder::setPointOfContact)
+ *         .merge();
+ * }</pre>
+ * @param <A> the accumulator type, one per key
+ * @author vibbix
+ */
+public final class MergePlan<A> {
+    private final Supplier<A> seedSupplier;
+    private final List<FluxZipOnKey.SourceBinding<A, ?>> sources;
+
+    private MergePlan(Supplier<A> seedSupplier) {
+        this.seedSupplier = seedSupplier;
+        this.sources = new ArrayList<>();
+    }
+
+    /**
+     * @param seedSupplier creates a fresh accumulator for every key
+     * @return an empty plan
+     */
+    public static <A> MergePlan<A> into(Supplier<A> seedSupplier) {
+        return new MergePlan<>(seedSupplier);
+    }
+
+    /**
+     * Registers a source. Setters are applied in registration order for every key.
+     * @param source source sorted ascending by key
+     * @param keyExtractor extracts the int key of an element
+     * @param setter folds an element into the accumulator
+     * @return this plan
+     */
+    public <T> MergePlan<A> source(Publisher<? extends T> source, ToIntFunction<? super T> keyExtractor,
+                                   BiConsumer<? super A, ? super T> setter) {
+        sources.add(SourceAppliers.<A, T>binding(source, false, keyExtractor, setter, false));
+        return this;
+    }
+
+    /**
+     * Registers sources sharing an element type, like the shards of one input, in list order
+     * @param sources sources, each sorted ascending by key
+     * @param keyExtractor extracts the int key of an element
+     * @param setter folds an element into the accumulator
+     * @return this plan
+     */
+    public <T> MergePlan<A> sources(List<? extends Publisher<? extends T>> sources,
+                                    ToIntFunction<? super T> keyExtractor, BiConsumer<? super A, ? super T> setter) {
+        for (Publisher<? extends T> source : sources) {
+            source(source, keyExtractor, setter);
+        }
+        return this;
+    }
+
+    /**
+     * Registers a source of key/value entries, passing only the value to the setter
+     * @param source entries sorted ascending by key
+     * @param setter folds the value of an entry into the accumulator
+     * @return this plan
+     */
+    public <V> MergePlan<A> entries(Publisher<? extends Map.Entry<Integer, ? extends V>> source,
+                                    BiConsumer<? super A, ? super V> setter) {
+        sources.add(SourceAppliers.<A, Map.Entry<Integer, ? extends V>>binding(source, false, MergePlan::keyOf, setter,
+                true));
+        return this;
+    }
+
+    /**
+     * Registers a source delivering its elements in batches, like the batch readers of {@code json.JSONDecoder}. The
+     * elements are folded straight out of each batch, one signal carries a whole batch.
+     * @param source batches of elements, sorted ascending by key across batches
+     * @param keyExtractor extracts the int key of an element
+     * @param setter folds an element into the accumulator
+     * @return this plan
+     */
+    public <T> MergePlan<A> batches(Publisher<? extends List<? extends T>> source,
+                                    ToIntFunction<? super T> keyExtractor, BiConsumer<? super A, ? super T> setter) {
+        sources.add(SourceAppliers.<A, T>binding(source, true, keyExtractor, setter, false));
+        return this;
+    }
+
+    /**
+     * Registers a source of batches of key/value entries, passing only the value to the setter
+     * @param source batches of entries, sorted ascending by key across batches
+     * @param setter folds the value of an entry into the accumulator
+     * @return this plan
+     */
+    public <V> MergePlan<A> entryBatches(Publisher<? extends List<? extends Map.Entry<Integer, ? extends V>>> source,
+                                         BiConsumer<? super A, ? super V> setter) {
+        sources.add(SourceAppliers.<A, Map.Entry<Integer, ? extends V>>binding(source, true, MergePlan::keyOf, setter,
+                true));
+        return this;
+    }
+
+    /**
+     * Reads the key of an entry without boxing it when it's a {@link KeyedEntry}
+     */
+    static int keyOf(Map.Entry<Integer, ?> entry) {
+        return KeyedEntry.keyOf(entry);
+    }
+
+    public int size() {
+        return sources.size();
+    }
+
+    /**
+     * @return one accumulator per key, in key order
+     */
+    public Flux<A> merge() {
+        return merge(Queues.SMALL_BUFFER_SIZE);
+    }
+
+    /**
+     * @param prefetch number of elements requested from each source up front
+     * @return one accumulator per key, in key order
+     */
+    public Flux<A> merge(int prefetch) {
+        return FluxZipOnKey.zipOnKey(sources, seedSupplier, prefetch);
+    }
+
+    /**
+     * @param chunkSize number of accumulators per emitted list
+     * @param prefetch number of elements, or batches for batched sources, requested from each source up front
+     * @return lists of chunkSize accumulators, one per key in key order, the last one possibly shorter
+     */
+    public Flux<List<A>> mergeChunks(int chunkSize, int prefetch) {
+        return FluxZipOnKey.zipOnKeyChunked(sources, seedSupplier, prefetch, chunkSize);
+    }
+}
@@ -1,47 +1,130 @@
 package merger;
+import binary.Codecs;
+import binary.ExternalSort;
+import join.LookupJoin;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Metrics;
 import models.HeavyEquipment;
+import models.KeyedEntry;
 import models.MergedRecord;
 import reactor.core.publisher.Flux;
 
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
-
-import static merger.MergeMarker.MERGE_MARKER_COMPARATOR;
 
 public class Merger {
     private final Flux<MergedRecord> mergedRecordFlux;
-    private final Flux<Map.Entry<Integer, EnumSet<HeavyEquipment>>> equipmentFlux;
-    private final Flux<Map.Entry<Integer, String>> materialsFlux;
-    private final Flux<Map.Entry<Integer, MergedRecord.PointOfContact>> contactFlux;
+    private final Flux<? extends Map.Entry<Integer, ? extends Set<HeavyEquipment>>> equipmentFlux;
+    private final Flux<? extends Map.Entry<Integer, String>> materialsFlux;
+    private final Flux<? extends Map.Entry<Integer, MergedRecord.PointOfContact>> contactFlux;
 
 
-    public Merger(Flux<MergedRecord> mergedRecordFlux, Flux<Map.Entry<Integer, EnumSet<HeavyEquipment>>> equipmentFlux,
-                  Flux<Map.Entry<Integer, String>> materialsFlux, Flux<Map.Entry<Integer, MergedRecord.PointOfContact>> contactFlux) {
+    public Merger(Flux<MergedRecord> mergedRecordFlux,
+                  Flux<? extends Map.Entry<Integer, ? extends Set<HeavyEquipment>>> equipmentFlux,
+                  Flux<? extends Map.Entry<Integer, String>> materialsFlux,
+                  Flux<? extends Map.Entry<Integer, MergedRecord.PointOfContact>> contactFlux) {
         this.mergedRecordFlux = mergedRecordFlux;//
         this.equipmentFlux = equipmentFlux;
         this.materialsFlux = materialsFlux;
         this.contactFlux = contactFlux;
     }
 
+    /**
+     * @return one merged record per ID of the main records, in ID order. IDs only found in the side inputs are dropped
+     * and counted as {@code merge.orphanIds}.
+     */
     public Flux<MergedRecord> run() {
-        Flux<MergeMarker<?>> records = mergedRecordFlux.map(MergeMarker::getMergeMarker);
-        Flux<MergeMarker<?>> contacts = contactFlux.map(MergeMarker::getMergeMarker);
-        Flux<MergeMarker<?>> equipment = equipmentFlux.map(MergeMarker::getMergeMarker);
-        Flux<MergeMarker<?>> materials = materialsFlux.windowUntilChanged(Map.Entry::getKey)
-                .flatMapSequential(Flux::collectList)
-                .map(Merger::convertMaterials)
-                .map(MergeMarker::getMergeMarker);
-
-        return Flux.mergeComparing(MERGE_MARKER_COMPARATOR, records, contacts, equipment, materials)
-                //.filter(marker -> !MergeMarker.isNoOp(marker))
-                .windowUntilChanged(MergeMarker::getKey)
-                .flatMapSequential(keyed -> keyed.reduce(MergedRecord.builder(), MergeMarker::accumulate))
-                .map(MergedRecord.Builder::build);
-    }
-
-    private static Map.Entry<Integer,Map<String,Long>> convertMaterials(List<Map.Entry<Integer, String>> materials) {
-        return Map.entry(materials.stream().findFirst().get().getKey(), materials.stream()
-                .collect(Collectors.groupingBy(Map.Entry::getValue, Collectors.counting())));
+        Counter orphanIds = Metrics.registry().counter("merge.orphanIds");
+        Flux<MergedRecord.Builder> merged = plan().merge()
+                .filter(builder -> hasMainRecord(builder, orphanIds));
+        if (!Metrics.isEnabled()) {
+            return merged.map(MergedRecord.Builder::build);
+        }
+        Histogram buildNanos = Metrics.registry().histogram("merge.buildNanos");
+        return merged.map(builder -> {
+            long start = System.nanoTime();
+            MergedRecord record = builder.build();
+            buildNanos.record(System.nanoTime() - start);
+            return record;
+        });
+    }
+
+    /**
+     * Joins the contacts and equipment by lookup instead of merging them, for side inputs that are small but not sorted.
+     * Only the main records and materials need to be sorted.
+     * @return the merged records, once the contacts and equipment are loaded
+     */
+    public Flux<MergedRecord> runWithLookups() {
+        return LookupJoin.load(contactFlux, equipmentFlux)
+                .flatMapMany(join -> new Merger(mergedRecordFlux, Flux.empty(), materialsFlux, Flux.empty())
+                        .run()
+                        .map(join::enrich));
+    }
+
+    /**
+     * Side inputs can hold IDs main.json doesn't have. Their builders have no site name or address to build a record
+     * from, so they're dropped, and counted to keep such data problems visible.
+     * @return true if the builder holds a main record, otherwise counts it as an orphan
+     */
+    static boolean hasMainRecord(MergedRecord.Builder builder, Counter orphanIds) {
+        if (builder.isComplete()) {
+            return true;
+        }
+        orphanIds.increment();
+        return false;
+    }
+
+    /**
+     * An empty equipment set has nothing to apply, it leaves the builder as is and is counted as
+     * {@code merge.noOpMarkers}, like MergeMarker did for its no-op markers. The aggregated materials are never empty.
+     */
+    static void setEquipment(MergedRecord.Builder builder, Set<HeavyEquipment> equipment, Counter noOps) {
+        if (equipment.isEmpty()) {
+            noOps.increment();
+        } else {
+            builder.setRequiredEquipment(equipment);
+        }
+    }
+
+    /**
+     * zipOnKey checks the order of its own sources, materials are checked before they're aggregated so an unsorted
+     * materials input is reported as such, rather than as unsorted aggregates
+     * @return the merge of the 4 sources, in the order their fields get applied
+     */
+    MergePlan<MergedRecord.Builder> plan() {
+        Counter noOps = Metrics.registry().counter("merge.noOpMarkers");
+        return MergePlan.into(MergedRecord::builder)
+                .source(mergedRecordFlux, MergedRecord::id, (builder, record) -> builder.apply(record.mutate()))
+                .entries(contactFlux, MergedRecord.Builder::setPointOfContact)
+                .entries(equipmentFlux, (MergedRecord.Builder builder, Set<HeavyEquipment> equipment) ->
+                        setEquipment(builder, equipment, noOps))
+                .entries(MaterialsAggregator.aggregate(KeyOrder.requireSorted(materialsFlux, KeyedEntry::keyOf,
+                        "materials")), MergedRecord.Builder::setRequiredMaterials);
+    }
+
+    /**
+     * Sorts every source by key with an external merge sort first, for inputs that are only partially ordered
+     * @param tempRoot folder for the spilled runs
+     * @param runSize number of elements sorted in memory per run
+     * @return a merger over the sorted sources
+     */
+    public Merger sorted(Path tempRoot, int runSize) {
+        return new Merger(ExternalSort.sort(mergedRecordFlux, Codecs.MERGED_RECORD, runSize, tempRoot),
+                ExternalSort.sort(equipmentFlux.map(KeyedEntry::copyOf), Codecs.EQUIPMENT_SET, runSize, tempRoot),
+                ExternalSort.sort(materialsFlux.map(KeyedEntry::copyOf), Codecs.MATERIAL, runSize, tempRoot),
+                ExternalSort.sort(contactFlux.map(KeyedEntry::copyOf), Codecs.CONTACT, runSize, tempRoot));
+    }
+
+    /**
+     * @param range the keys to keep
+     * @return a merger over the same sources, restricted to the keys in range
+     */
+    public Merger restrict(KeyRange range) {
+        return new Merger(range.restrict(mergedRecordFlux, MergedRecord::id),
+                range.restrict(equipmentFlux, Map.Entry::getKey),
+                range.restrict(materialsFlux, Map.Entry::getKey),
+                range.restrict(contactFlux, Map.Entry::getKey));
     }
 
 }
@@ -0,0 +1,74 @@
+package merger;
+
+import models.MergedRecord;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Runs one independent merge per key range concurrently, instead of merging everything on one stream.
+ * <p>
+ * Only the subscriptions go through the parallel scheduler. A partition's merge then runs on the threads its own
+ * sources emit on (the reader threads of its decoders, see {@code json.ReaderThreads}), so partitions merge in parallel
+ * because their readers do, without hopping each record to another thread.
+ * <p>
+ * Each partition gets its own {@link Merger} (and so its own source subscriptions) from the factory. In ordered mode,
+ * the partitions are concatenated back in key order, with up to {@code prefetch} records buffered per partition that
+ * is running ahead of the one being emitted.
+ * <p>
+ * Partitioning only scales when the factory's mergers read nothing but their range, like the seeking mergers of
+ * {@link IndexedMerger#partition(int)}. Otherwise every partition pays for decoding the inputs up to its range.
+ */
+public class PartitionedMerger {
+    private final List<KeyRange> ranges;
+    private final Function<KeyRange, Merger> mergerFactory;
+    private final int prefetch;
+
+    public PartitionedMerger(List<KeyRange> ranges, Function<KeyRange, Merger> mergerFactory, int prefetch) {
+        if (ranges.isEmpty()) {
+            throw new IllegalArgumentException("At least one key range is required");
+        }
+        this.ranges = List.copyOf(ranges);
+        this.mergerFactory = mergerFactory;
+        this.prefetch = prefetch;
+    }
+
+    public PartitionedMerger(List<KeyRange> ranges, Function<KeyRange, Merger> mergerFactory) {
+        this(ranges, mergerFactory, Queues.SMALL_BUFFER_SIZE);
+    }
+
+    /**
+     * Partitions an existing merger by filtering its sources to each range. This doesn't scale: it splits the merge
+     * work, not the decoding.
+     * <p>
+     * Every partition re-subscribes to the sources, so they need to be cold, like the JSONDecoder readers. Each
+     * partition decodes its sources from the start and drops everything before its range, so n partitions decode the
+     * inputs about (n + 1) / 2 times in total, and the last partition alone decodes all of them. Only use it for
+     * sources that can't seek; {@link IndexedMerger#partition(int)} seeks into each file at its range instead.
+     */
+    public PartitionedMerger(List<KeyRange> ranges, Merger merger) {
+        this(ranges, merger::restrict);
+    }
+
+    public Flux<MergedRecord> run() {
+        return run(true);
+    }
+
+    /**
+     * @param ordered true to emit the records in key order, false to emit them as soon as any partition produces them
+     */
+    public Flux<MergedRecord> run(boolean ordered) {
+        Flux<Flux<MergedRecord>> partitions = Flux.fromIterable(ranges)
+                .map(range -> mergerFactory.apply(range)
+                        .run()
+                        .subscribeOn(Schedulers.parallel()));
+        int concurrency = ranges.size();
+        if (ordered) {
+            return Flux.mergeSequential(partitions, concurrency, prefetch);
+        }
+        return Flux.merge(partitions, concurrency, prefetch);
+    }
+}
@@ -0,0 +1,48 @@
+package merger;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bytecode template of the per-source appliers of {@link MergePlan}, never used as is.
+ * <p>
+ * {@link SourceAppliers} defines a hidden copy of this class for every key extractor and setter class pair, so the
+ * call sites in {@link #applyAsInt} and {@link #apply} only ever see one receiver class each and the JIT inlines the
+ * setter into them. A shared wrapper would have one call site profiled with the setters of every source.
+ */
+final class SourceApplier implements ToIntFunction<Object>, BiFunction<Object, Object, Object> {
+    //class data of the hidden copy: true if elements are entries and only their value goes to the setter
+    private static final boolean ENTRIES = entries();
+
+    private final ToIntFunction<Object> keyExtractor;
+    private final BiConsumer<Object, Object> setter;
+
+    SourceApplier(ToIntFunction<Object> keyExtractor, BiConsumer<Object, Object> setter) {
+        this.keyExtractor = keyExtractor;
+        this.setter = setter;
+    }
+
+    @Override
+    public int applyAsInt(Object element) {
+        return keyExtractor.applyAsInt(element);
+    }
+
+    @Override
+    public Object apply(Object accumulator, Object element) {
+        setter.accept(accumulator, ENTRIES ? ((Map.Entry<?, ?>) element).getValue() : element);
+        return accumulator;
+    }
+
+    private static boolean entries() {
+        try {
+            return Boolean.TRUE.equals(MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME,
+                    Boolean.class));
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
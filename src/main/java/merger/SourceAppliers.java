@@ -0,0 +1,79 @@
+package merger;
+
+import org.reactivestreams.Publisher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Creates the {@link SourceApplier} of a source, from a hidden copy of the template per key extractor and setter class
+ * pair. The copies are cached, so plans built per lookup (like {@link IndexedMerger#get}) define no new classes, and
+ * capturing lambdas of the same class share one copy.
+ */
+final class SourceAppliers {
+    private static final MethodType CONSTRUCTOR = MethodType.methodType(void.class, ToIntFunction.class,
+            BiConsumer.class);
+    private static final byte[] TEMPLATE = template();
+    private static final ConcurrentMap<Shape, MethodHandle> CONSTRUCTORS = new ConcurrentHashMap<>();
+
+    private SourceAppliers() {
+    }
+
+    private record Shape(Class<?> keyExtractor, Class<?> setter, boolean entries) {
+    }
+
+    /**
+     * @param source source sorted ascending by key, of elements or of lists of elements when batched
+     * @param batched true if the source emits lists of elements
+     * @param keyExtractor extracts the int key of an element
+     * @param setter folds an element, or the value of an entry, into the accumulator
+     * @param entries true if the elements are entries, and only their value goes to the setter
+     * @return a binding whose key extractor and accumulator are both the source's own applier
+     */
+    @SuppressWarnings("unchecked")
+    static <A, T> FluxZipOnKey.SourceBinding<A, T> binding(Publisher<?> source, boolean batched,
+                                                           ToIntFunction<? super T> keyExtractor,
+                                                           BiConsumer<? super A, ?> setter, boolean entries) {
+        MethodHandle constructor = CONSTRUCTORS.computeIfAbsent(
+                new Shape(keyExtractor.getClass(), setter.getClass(), entries), SourceAppliers::define);
+        Object applier;
+        try {
+            applier = constructor.invoke(keyExtractor, setter);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create the applier of " + setter, e);
+        }
+        return new FluxZipOnKey.SourceBinding<>(source, batched, (ToIntFunction<? super T>) applier,
+                (BiFunction<A, ? super T, A>) applier);
+    }
+
+    private static MethodHandle define(Shape shape) {
+        try {
+            MethodHandles.Lookup hidden = MethodHandles.lookup()
+                    .defineHiddenClassWithClassData(TEMPLATE, shape.entries(), true);
+            return hidden.findConstructor(hidden.lookupClass(), CONSTRUCTOR)
+                    .asType(MethodType.methodType(Object.class, ToIntFunction.class, BiConsumer.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not define an applier for " + shape, e);
+        }
+    }
+
+    private static byte[] template() {
+        try (InputStream in = SourceApplier.class.getResourceAsStream("SourceApplier.class")) {
+            if (in == null) {
+                throw new IllegalStateException("SourceApplier.class is not on the classpath");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package merger;
+
+/**
+ * Binary min-heap of zipOnKey source indexes, ordered by the key of each source's head element and then by index.
+ * <p>
+ * Breaking ties on the index keeps sources sharing a key folded in registration order. Only touched from within the
+ * drain loop.
+ */
+final class SourceHeap {
+    private final FluxZipOnKey.ZipOnKeyInner<?, ?>[] inners;
+    private final int[] heap;
+    private int size;
+
+    SourceHeap(FluxZipOnKey.ZipOnKeyInner<?, ?>[] inners) {
+        this.inners = inners;
+        this.heap = new int[inners.length];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the index of the source with the lowest head key
+     */
+    int peek() {
+        return heap[0];
+    }
+
+    /**
+     * @param index a source whose head is populated, and that isn't in the heap yet
+     */
+    void push(int index) {
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(index, heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = index;
+    }
+
+    /**
+     * @return the index of the source with the lowest head key, removed from the heap
+     */
+    int pop() {
+        int top = heap[0];
+        int last = heap[--size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && less(heap[right], heap[child])) {
+                child = right;
+            }
+            if (!less(heap[child], last)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (size > 0) {
+            heap[i] = last;
+        }
+        return top;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    private boolean less(int a, int b) {
+        int keyA = inners[a].headKey;
+        int keyB = inners[b].headKey;
+        return keyA < keyB || (keyA == keyB && a < b);
+    }
+}
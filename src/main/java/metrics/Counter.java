@@ -0,0 +1,25 @@
+package metrics;
+
+/**
+ * Monotonic counter
+ */
+public interface Counter {
+    Counter NOOP = new Counter() {
+        @Override
+        public void add(long n) {
+        }
+
+        @Override
+        public long sum() {
+            return 0;
+        }
+    };
+
+    void add(long n);
+
+    default void increment() {
+        add(1);
+    }
+
+    long sum();
+}
@@ -0,0 +1,46 @@
+package metrics;
+
+/**
+ * Distribution of non-negative long values, such as latencies in nanoseconds or group sizes
+ */
+public interface Histogram {
+    Histogram NOOP = new Histogram() {
+        @Override
+        public void record(long value) {
+        }
+
+        @Override
+        public long count() {
+            return 0;
+        }
+
+        @Override
+        public long valueAtPercentile(double percentile) {
+            return 0;
+        }
+
+        @Override
+        public long max() {
+            return 0;
+        }
+
+        @Override
+        public double mean() {
+            return 0;
+        }
+    };
+
+    void record(long value);
+
+    long count();
+
+    /**
+     * @param percentile percentile from 0 to 100
+     * @return an upper bound of the value at the percentile, within the precision of the histogram
+     */
+    long valueAtPercentile(double percentile);
+
+    long max();
+
+    double mean();
+}
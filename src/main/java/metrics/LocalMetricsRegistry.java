@@ -0,0 +1,40 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory registry, reporting everything it recorded as text
+ * @author vibbix
+ */
+public final class LocalMetricsRegistry implements MetricsRegistry {
+    private final Map<String, StripedCounter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LogLinearHistogram> histograms = new ConcurrentHashMap<>();
+    private final long start = System.nanoTime();
+
+    @Override
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, ignored -> new StripedCounter());
+    }
+
+    @Override
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, ignored -> new LogLinearHistogram());
+    }
+
+    /**
+     * @return one line per meter, sorted by name; counters include their average rate since the registry was created
+     */
+    public String report() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(counters).forEach((name, counter) -> sb.append("%s: %d (%.0f/s)%n"
+                .formatted(name, counter.sum(), counter.sum() / seconds)));
+        new TreeMap<>(histograms).forEach((name, histogram) -> sb.append(
+                "%s: count=%d, mean=%.1f, p50=%d, p99=%d, p99.9=%d, max=%d%n".formatted(name, histogram.count(),
+                        histogram.mean(), histogram.valueAtPercentile(50), histogram.valueAtPercentile(99),
+                        histogram.valueAtPercentile(99.9), histogram.max())));
+        return sb.toString();
+    }
+}
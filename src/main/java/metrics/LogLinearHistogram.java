@@ -0,0 +1,86 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed size histogram in the style of HdrHistogram: every power of 2 is split into {@value #SUB_BUCKETS} linear
+ * buckets, so any long value is recorded with a relative error of at most 1/{@value #SUB_BUCKETS}, in about 15 KB.
+ * <p>
+ * Recording is an index computation and one atomic add, no allocation and no lock.
+ * @author vibbix
+ */
+final class LogLinearHistogram implements Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    //values below SUB_BUCKETS get a bucket each, then SUB_BUCKETS buckets per power of 2 up to 2^62
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the highest value that lands in the bucket
+     */
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = SUB_BUCKETS + index % SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public void record(long value) {
+        counts.getAndIncrement(indexOf(value));
+        total.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    @Override
+    public long count() {
+        return total.sum();
+    }
+
+    @Override
+    public long valueAtPercentile(double percentile) {
+        long count = count();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max());
+            }
+        }
+        return max();
+    }
+
+    @Override
+    public long max() {
+        return max.get();
+    }
+
+    @Override
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+}
@@ -0,0 +1,29 @@
+package metrics;
+
+import java.util.Objects;
+
+/**
+ * Holds the registry the pipeline reports to, {@link MetricsRegistry#NOOP} until one is installed.
+ * <p>
+ * Install the registry before assembling the pipeline: meters are resolved when readers are created and merges are
+ * subscribed to.
+ * @author vibbix
+ */
+public final class Metrics {
+    private static volatile MetricsRegistry registry = MetricsRegistry.NOOP;
+
+    private Metrics() {
+    }
+
+    public static MetricsRegistry registry() {
+        return registry;
+    }
+
+    public static void use(MetricsRegistry registry) {
+        Metrics.registry = Objects.requireNonNull(registry);
+    }
+
+    public static boolean isEnabled() {
+        return registry.isEnabled();
+    }
+}
@@ -0,0 +1,41 @@
+package metrics;
+
+/**
+ * Hands out named meters. Components look their meters up once, when a flux is assembled or subscribed to, and never
+ * per element.
+ */
+public interface MetricsRegistry {
+    /**
+     * Registry that records nothing. Instrumented code checks {@link #isEnabled()} and skips the timing calls entirely.
+     */
+    MetricsRegistry NOOP = new MetricsRegistry() {
+        @Override
+        public Counter counter(String name) {
+            return Counter.NOOP;
+        }
+
+        @Override
+        public Histogram histogram(String name) {
+            return Histogram.NOOP;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * @return the counter with this name, created on first use
+     */
+    Counter counter(String name);
+
+    /**
+     * @return the histogram with this name, created on first use
+     */
+    Histogram histogram(String name);
+
+    default boolean isEnabled() {
+        return true;
+    }
+}
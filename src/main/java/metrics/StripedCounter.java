@@ -0,0 +1,25 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter backed by a {@link LongAdder}, so parallel sources and partitions each update their own cell
+ */
+final class StripedCounter implements Counter {
+    private final LongAdder adder = new LongAdder();
+
+    @Override
+    public void add(long n) {
+        adder.add(n);
+    }
+
+    @Override
+    public void increment() {
+        adder.increment();
+    }
+
+    @Override
+    public long sum() {
+        return adder.sum();
+    }
+}
@@ -0,0 +1,131 @@
+package models;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of {@link HeavyEquipment} backed by an int bitmask of ordinals.
+ * <p>
+ * There are only {@code 2^n} possible sets, so every one of them is created once up front and shared: converting to an
+ * EquipmentSet never allocates, and records can hand the same instance around without defensive copies.
+ */
+public final class EquipmentSet extends AbstractSet<HeavyEquipment> {
+    private static final HeavyEquipment[] EQUIPMENT = HeavyEquipment.values();
+    private static final EquipmentSet[] SETS;
+
+    static {
+        if (EQUIPMENT.length >= Integer.SIZE) {
+            throw new IllegalStateException("%d kinds of equipment don't fit an int bitmask".formatted(EQUIPMENT.length));
+        }
+        SETS = new EquipmentSet[1 << EQUIPMENT.length];
+        for (int mask = 0; mask < SETS.length; mask++) {
+            SETS[mask] = new EquipmentSet(mask);
+        }
+    }
+
+    public static final EquipmentSet NONE = SETS[0];
+
+    private final int mask;
+
+    private EquipmentSet(int mask) {
+        this.mask = mask;
+    }
+
+    /**
+     * @param mask bitmask of {@link HeavyEquipment} ordinals
+     * @return the shared set for the mask
+     */
+    public static EquipmentSet ofMask(int mask) {
+        if ((mask & ~(SETS.length - 1)) != 0) {
+            throw new IllegalArgumentException("Invalid equipment mask %s".formatted(Integer.toBinaryString(mask)));
+        }
+        return SETS[mask];
+    }
+
+    /**
+     * @return the shared set holding the same equipment, which is the argument itself if it's already an EquipmentSet
+     */
+    public static EquipmentSet of(Collection<HeavyEquipment> equipment) {
+        if (equipment instanceof EquipmentSet set) {
+            return set;
+        }
+        return SETS[maskOf(equipment)];
+    }
+
+    public static int maskOf(Collection<HeavyEquipment> equipment) {
+        if (equipment instanceof EquipmentSet set) {
+            return set.mask;
+        }
+        int mask = 0;
+        for (HeavyEquipment e : equipment) {
+            mask |= 1 << e.ordinal();
+        }
+        return mask;
+    }
+
+    public int mask() {
+        return mask;
+    }
+
+    public EnumSet<HeavyEquipment> toEnumSet() {
+        EnumSet<HeavyEquipment> set = EnumSet.noneOf(HeavyEquipment.class);
+        for (int m = mask; m != 0; m &= m - 1) {
+            set.add(EQUIPMENT[Integer.numberOfTrailingZeros(m)]);
+        }
+        return set;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof HeavyEquipment e && (mask & (1 << e.ordinal())) != 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mask == 0;
+    }
+
+    @Override
+    public int size() {
+        return Integer.bitCount(mask);
+    }
+
+    @Override
+    public Iterator<HeavyEquipment> iterator() {
+        return new Iterator<>() {
+            private int remaining = mask;
+
+            @Override
+            public boolean hasNext() {
+                return remaining != 0;
+            }
+
+            @Override
+            public HeavyEquipment next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                HeavyEquipment next = EQUIPMENT[Integer.numberOfTrailingZeros(remaining)];
+                remaining &= remaining - 1;
+                return next;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof EquipmentSet other) {
+            return mask == other.mask;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        //same as AbstractSet, the sum of the element hashes, so it stays equal to an EnumSet of the same equipment
+        return super.hashCode();
+    }
+}
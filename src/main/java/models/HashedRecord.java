@@ -0,0 +1,87 @@
+package models;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A merged record along with a 64-bit hash of its content, used to tell whether re-merging an ID changed anything.
+ * <p>
+ * The hash only depends on the values: material counts are combined independently of map order, and equipment by
+ * enum ordinal, so the same record hashes the same across runs and JVMs.
+ */
+public record HashedRecord(MergedRecord record, long contentHash) {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long NULL = 0x9E3779B97F4A7C15L;
+
+    public static HashedRecord of(MergedRecord record) {
+        return new HashedRecord(record, hashOf(record));
+    }
+
+    public int id() {
+        return record.id();
+    }
+
+    public static long hashOf(MergedRecord record) {
+        long h = mix(record.id());
+        h = combine(h, hashOf(record.siteName()));
+        h = combine(h, hashOf(record.address()));
+        MergedRecord.PointOfContact contact = record.contact();
+        if (contact == null) {
+            h = combine(h, NULL);
+        } else {
+            h = combine(h, hashOf(contact.name()));
+            h = combine(h, hashOf(contact.title()));
+            h = combine(h, hashOf(contact.phoneNumber()));
+        }
+        h = combine(h, hashOf(record.requiredMaterials()));
+        h = combine(h, hashOf(record.requiredEquipment()));
+        return h;
+    }
+
+    private static long hashOf(Map<String, Long> materials) {
+        if (materials == null || materials.isEmpty()) {
+            return NULL;
+        }
+        //summed so the iteration order of the map doesn't matter
+        long sum = 0;
+        for (Map.Entry<String, Long> material : materials.entrySet()) {
+            sum += mix(hashOf(material.getKey()) ^ mix(material.getValue()));
+        }
+        return sum;
+    }
+
+    private static long hashOf(Collection<HeavyEquipment> equipment) {
+        if (equipment == null || equipment.isEmpty()) {
+            return NULL;
+        }
+        return mix(EquipmentSet.maskOf(equipment));
+    }
+
+    /**
+     * FNV-1a over the chars, String.hashCode is only 32 bits
+     */
+    private static long hashOf(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        long h = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long combine(long h, long value) {
+        return mix(h * 31 + value);
+    }
+
+    /**
+     * Finalizer of SplitMix64
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
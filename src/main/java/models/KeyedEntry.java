@@ -0,0 +1,61 @@
+package models;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Lightweight {@code Map.Entry<Integer, V>} that keeps its key as a primitive int.
+ * <p>
+ * Produced by the keyed decoders for the single-key-object shape ({@code {"1001": ...}}), so that no boxed key or
+ * generic entry has to be resolved per element.
+ */
+public record KeyedEntry<V>(int key, V value) implements Map.Entry<Integer, V> {
+    /**
+     * @return the entry itself if it's already a KeyedEntry, otherwise a KeyedEntry with the same key and value
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> KeyedEntry<V> copyOf(Map.Entry<Integer, ? extends V> entry) {
+        if (entry instanceof KeyedEntry<?> keyed) {
+            return (KeyedEntry<V>) keyed;
+        }
+        return new KeyedEntry<>(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Reads the key of an entry without boxing it when it's a KeyedEntry
+     */
+    public static int keyOf(Map.Entry<Integer, ?> entry) {
+        if (entry instanceof KeyedEntry<?> keyed) {
+            return keyed.key();
+        }
+        return entry.getKey();
+    }
+
+    @Override
+    public Integer getKey() {
+        return key;
+    }
+
+    @Override
+    public V getValue() {
+        return value;
+    }
+
+    @Override
+    public V setValue(V value) {
+        throw new UnsupportedOperationException("KeyedEntry is immutable");
+    }
+
+    //equals and hashCode follow the Map.Entry contract, so a KeyedEntry can stand in for Map.entry(...)
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Map.Entry<?, ?> e
+                && e.getKey() instanceof Integer k && k == key
+                && Objects.equals(value, e.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(key) ^ Objects.hashCode(value);
+    }
+}
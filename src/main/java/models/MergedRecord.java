@@ -16,6 +16,10 @@ public record MergedRecord(int id, String siteName, String address, PointOfConta
         return new Builder();
     }
 
+    /**
+     * @return a builder holding this record's fields. The collections are shared rather than copied, as records never
+     * modify them.
+     */
     public Builder mutate() {
         var builder =  new Builder()
                 .setID(id)
@@ -23,7 +27,7 @@ public record MergedRecord(int id, String siteName, String address, PointOfConta
                 .setAddress(address)
                 .setPointOfContact(contact);
         if (requiredEquipment != null && !requiredEquipment.isEmpty()) {
-            builder.setRequiredEquipment(EnumSet.copyOf(requiredEquipment));
+            builder.requiredEquipment = EquipmentSet.of(requiredEquipment);
         }
         if (requiredMaterials != null && !requiredMaterials.isEmpty()) {
             builder.setRequiredMaterials(requiredMaterials);
@@ -31,21 +35,26 @@ public record MergedRecord(int id, String siteName, String address, PointOfConta
         return builder;
     }
 
+    /**
+     * Builder that takes ownership of what it's handed instead of copying it.
+     * <p>
+     * Fields start out null and are only set when needed. The materials map passed to
+     * {@link #setRequiredMaterials(Map)} is moved into the built record as is, so it must not be modified afterwards.
+     * Equipment is kept as a shared immutable {@link EquipmentSet}, so it's never copied either.
+     */
     public static class Builder {
         private Integer ID;
         private String siteName;
         private String address;
         private PointOfContact pointOfContact;
         private Map<String, Long> requiredMaterials;
-        private EnumSet<HeavyEquipment> requiredEquipment;
+        private EquipmentSet requiredEquipment;
 
         public Builder() {
-            this.requiredMaterials = new HashMap<>();
-            this.requiredEquipment = EnumSet.noneOf(HeavyEquipment.class);
         }
 
         /**
-         * Applies all non-null fields from other to this builder
+         * Applies all non-null fields from other to this builder, moving its collections over
          * @param other the builder to merge from
          * @return this builder
          */
@@ -63,10 +72,10 @@ public record MergedRecord(int id, String siteName, String address, PointOfConta
                 this.pointOfContact = other.pointOfContact;
             }
             if (other.requiredMaterials != null) {
-                this.requiredMaterials = new HashMap<>(requiredMaterials);
+                this.requiredMaterials = other.requiredMaterials;
             }
             if (other.requiredEquipment != null) {
-                this.requiredEquipment = other.requiredEquipment.clone();
+                this.requiredEquipment = other.requiredEquipment;
             }
             return this;
         }
@@ -92,31 +101,38 @@ public record MergedRecord(int id, String siteName, String address, PointOfConta
             return this;
         }
 
+        /**
+         * @param requiredMaterials counts by material, owned by the builder from now on
+         */
         public Builder setRequiredMaterials(Map<String, Long> requiredMaterials) {
             this.requiredMaterials = requiredMaterials;
             return this;
         }
 
         public <T extends Set<HeavyEquipment>> Builder setRequiredEquipment(T requiredEquipment) {
-            var es = EnumSet.noneOf(HeavyEquipment.class);
-            es.addAll(requiredEquipment);
-            this.requiredEquipment = es;
+            this.requiredEquipment = EquipmentSet.of(requiredEquipment);
             return this;
         }
 
+        /**
+         * @return true once a main record set the ID, site name and address, which side inputs alone never do
+         */
+        public boolean isComplete() {
+            return ID != null && siteName != null && address != null;
+        }
+
         public MergedRecord build() {
             Map<String,Long> materials = requiredMaterials;
             if (materials == null || materials.isEmpty()) {
                 materials =  Collections.emptyMap();
             } else {
+                //no-op for maps that are already unmodifiable, like those of a mutated record
                 materials = Collections.unmodifiableMap(materials);
             }
 
             Set<HeavyEquipment> equipment = requiredEquipment;
-            if (equipment == null || equipment.isEmpty()) {
-                equipment = Collections.emptySet();
-            } else {
-                equipment = requiredEquipment.clone();
+            if (equipment == null) {
+                equipment = EquipmentSet.NONE;
             }
 
             return new MergedRecord(ID, siteName, address, pointOfContact, materials, equipment);
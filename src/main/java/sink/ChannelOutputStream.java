@@ -0,0 +1,87 @@
+package sink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * OutputStream that collects bytes in a direct buffer, and writes the buffer to a channel when it fills up.
+ * <p>
+ * Writing a heap array to a {@code FileChannel} makes the JDK copy it into a temporary direct buffer first; filling
+ * our own direct buffer skips that copy. The buffer is kept across files, {@link #target} swaps the channel.
+ */
+final class ChannelOutputStream extends OutputStream {
+    private final ByteBuffer buffer;
+    private WritableByteChannel channel;
+    private long written;
+
+    ChannelOutputStream(int bufferSize) {
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Flushes whatever is buffered for the previous channel, then writes to the given one
+     */
+    void target(WritableByteChannel channel) throws IOException {
+        flush();
+        this.channel = channel;
+        this.written = 0;
+    }
+
+    /**
+     * @return bytes written since the channel was targeted, including buffered ones
+     */
+    long written() {
+        return written;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+        written++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        written += len;
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (buffer.position() > 0) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (channel == null) {
+            throw new IOException("No channel to write to");
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Only flushes, the channel is closed by its owner and the buffer is kept for the next one
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,194 @@
+package sink;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import models.MergedRecord;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes merged records to rotating NDJSON or JSON array files, optionally gzipped.
+ * <p>
+ * Records are handed over in batches to a dedicated writer thread, which serializes them through one Jackson generator
+ * per file into a direct buffer that is written out with a {@link FileChannel}. Only 2 batches are requested ahead of
+ * the writer, so a slow disk slows the merge down instead of piling records up in memory.
+ * <p>
+ * Files are named {@code <prefix>-00000.ndjson}, {@code <prefix>-00001.ndjson}, ... with a {@code .gz} suffix when
+ * compressed.
+ * @author vibbix
+ */
+public final class RecordSink {
+    private static final int BATCHES_IN_FLIGHT = 2;
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+    private final Path folder;
+    private final String prefix;
+    private final SinkOptions options;
+    private final JsonFactory factory;
+    private final ObjectWriter writer;
+
+    public RecordSink(Path folder, String prefix) {
+        this(folder, prefix, SinkOptions.DEFAULT);
+    }
+
+    /**
+     * @param folder folder to write the files to, created if missing
+     * @param prefix file name prefix
+     * @param options format, compression and rotation
+     */
+    public RecordSink(Path folder, String prefix, SinkOptions options) {
+        this.folder = folder;
+        this.prefix = prefix;
+        this.options = options;
+        ObjectMapper mapper = new ObjectMapper();
+        this.factory = mapper.getFactory();
+        //flushing after every record would push every record down to the channel on its own
+        this.writer = mapper.writerFor(MergedRecord.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * @param records records to write
+     * @return the totals, once the last file is closed
+     */
+    public Mono<SinkStats> write(Flux<MergedRecord> records) {
+        return Mono.using(RotatingWriter::new,
+                rotatingWriter -> records.buffer(options.batchSize())
+                        .publishOn(rotatingWriter.thread, BATCHES_IN_FLIGHT)
+                        .<Void>handle((batch, sink) -> {
+                            try {
+                                rotatingWriter.writeBatch(batch);
+                            } catch (IOException e) {
+                                sink.error(e);
+                            }
+                        })
+                        .then(Mono.fromCallable(rotatingWriter::finish)),
+                RotatingWriter::closeQuietly);
+    }
+
+    private Path fileName(int index) {
+        return folder.resolve("%s-%05d%s%s".formatted(prefix, index, options.format().getExtension(),
+                options.gzip() ? ".gz" : ""));
+    }
+
+    /**
+     * State of one {@link #write}, only touched from its writer thread
+     */
+    private final class RotatingWriter {
+        private final Scheduler thread;
+        private final ChannelOutputStream out;
+        private final long start;
+        private FileChannel channel;
+        private GZIPOutputStream gzip;
+        private JsonGenerator generator;
+        private int files;
+        private long recordsInFile;
+        private long records;
+        private long bytes;
+
+        RotatingWriter() throws IOException {
+            Files.createDirectories(folder);
+            this.out = new ChannelOutputStream(options.bufferSize());
+            this.thread = Schedulers.newSingle("record-sink-" + prefix, true);
+            this.start = System.nanoTime();
+        }
+
+        void writeBatch(List<MergedRecord> batch) throws IOException {
+            for (MergedRecord record : batch) {
+                if (generator == null) {
+                    openFile();
+                }
+                writer.writeValue(generator, record);
+                records++;
+                recordsInFile++;
+                if (rotationDue()) {
+                    closeFile();
+                }
+            }
+        }
+
+        /**
+         * The byte count doesn't include what the generator and gzip still buffer, so size rotation is approximate
+         */
+        private boolean rotationDue() {
+            return (options.recordsPerFile() > 0 && recordsInFile >= options.recordsPerFile())
+                    || (options.bytesPerFile() > 0 && out.written() >= options.bytesPerFile());
+        }
+
+        private void openFile() throws IOException {
+            channel = FileChannel.open(fileName(files), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            files++;
+            recordsInFile = 0;
+            out.target(channel);
+            OutputStream target = out;
+            if (options.gzip()) {
+                gzip = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+                target = gzip;
+            }
+            generator = factory.createGenerator(target);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (options.format() == SinkOptions.Format.JSON_ARRAY) {
+                generator.writeStartArray();
+            } else {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+            }
+        }
+
+        private void closeFile() throws IOException {
+            if (options.format() == SinkOptions.Format.JSON_ARRAY) {
+                generator.writeEndArray();
+            } else {
+                generator.writeRaw('\n');
+            }
+            generator.close();
+            generator = null;
+            if (gzip != null) {
+                //writes the gzip trailer and releases the deflater, out itself stays open
+                gzip.close();
+                gzip = null;
+            }
+            out.flush();
+            bytes += out.written();
+            channel.close();
+            channel = null;
+        }
+
+        SinkStats finish() throws IOException {
+            if (generator != null) {
+                closeFile();
+            }
+            return new SinkStats(records, bytes, files, Duration.ofNanos(System.nanoTime() - start));
+        }
+
+        void closeQuietly() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                Logger.getLogger("RecordSink").log(Level.WARNING, e, () -> "Failed to close " + fileName(files - 1));
+            }
+            //graceful, as this can run on the writer thread itself
+            thread.disposeGracefully().subscribe();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package sink;
+
+/**
+ * Output settings for a {@link RecordSink}.
+ * @param format how records are laid out in each file
+ * @param gzip compress every file with gzip
+ * @param recordsPerFile start a new file after this many records, 0 to never rotate on record count
+ * @param bytesPerFile start a new file once this many bytes were written to the current one, 0 to never rotate on size
+ * @param batchSize number of records handed to the writer thread at once
+ * @param bufferSize size of the direct buffer the files are written through
+ */
+public record SinkOptions(Format format, boolean gzip, long recordsPerFile, long bytesPerFile, int batchSize,
+                          int bufferSize) {
+    public static final SinkOptions DEFAULT = new SinkOptions(Format.NDJSON, false, 0, 0, 512, 1 << 20);
+
+    public enum Format {
+        /**
+         * One record per line
+         */
+        NDJSON(".ndjson"),
+        /**
+         * Every file is a single JSON array of records
+         */
+        JSON_ARRAY(".json");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    public SinkOptions {
+        if (format == null) {
+            throw new IllegalArgumentException("format is required");
+        }
+        if (recordsPerFile < 0) {
+            throw new IllegalArgumentException("recordsPerFile >= 0 required but it was " + recordsPerFile);
+        }
+        if (bytesPerFile < 0) {
+            throw new IllegalArgumentException("bytesPerFile >= 0 required but it was " + bytesPerFile);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize > 0 required but it was " + batchSize);
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize > 0 required but it was " + bufferSize);
+        }
+    }
+
+    public SinkOptions withFormat(Format format) {
+        return new SinkOptions(format, gzip, recordsPerFile, bytesPerFile, batchSize, bufferSize);
+    }
+
+    public SinkOptions withGzip(boolean gzip) {
+        return new SinkOptions(format, gzip, recordsPerFile, bytesPerFile, batchSize, bufferSize);
+    }
+
+    public SinkOptions withRotation(long recordsPerFile, long bytesPerFile) {
+        return new SinkOptions(format, gzip, recordsPerFile, bytesPerFile, batchSize, bufferSize);
+    }
+}
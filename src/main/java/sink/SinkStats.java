@@ -0,0 +1,31 @@
+package sink;
+
+import java.time.Duration;
+
+/**
+ * Totals of a completed {@link RecordSink#write}
+ * @param records number of records written
+ * @param bytes number of bytes written to disk, after compression
+ * @param files number of files written
+ * @param elapsed time from subscription to the last file being closed
+ */
+public record SinkStats(long records, long bytes, int files, Duration elapsed) {
+    public double recordsPerSecond() {
+        return perSecond(records);
+    }
+
+    public double bytesPerSecond() {
+        return perSecond(bytes);
+    }
+
+    private double perSecond(long value) {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : value * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SinkStats[records=%d, bytes=%d, files=%d, elapsed=%s, records/s=%.0f, MB/s=%.1f]"
+                .formatted(records, bytes, files, elapsed, recordsPerSecond(), bytesPerSecond() / (1 << 20));
+    }
+}
@@ -0,0 +1,134 @@
+package binary;
+
+import models.EquipmentSet;
+import models.HashedRecord;
+import models.HeavyEquipment;
+import models.KeyedEntry;
+import models.MergedRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryFilesTest {
+    @TempDir
+    Path folder;
+
+    private <V> List<V> roundTrip(List<V> values, BinaryCodec<V> codec, int blockSize) {
+        Path file = folder.resolve("values.bin");
+        assertEquals(values.size(), BinaryFiles.write(Flux.fromIterable(values), file, codec, blockSize).block());
+        return BinaryFiles.read(file, codec).collectList().block();
+    }
+
+    @Test
+    void keyDeltasRoundTripAcrossBlocks() {
+        //deltas up and down, overflowing ones included, with blocks of 3 splitting them
+        int[] keys = {5, 5, 6, 1000, -1000, Integer.MAX_VALUE, Integer.MIN_VALUE, 0, 128, 127, -1};
+        List<KeyedEntry<String>> materials = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            materials.add(new KeyedEntry<>(keys[i], i % 2 == 0 ? "Wood" : "Glass"));
+        }
+
+        assertEquals(materials, roundTrip(materials, Codecs.MATERIAL, 3));
+    }
+
+    @Test
+    void dictionariesAreSharedAcrossBlocks() {
+        List<KeyedEntry<String>> materials = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            materials.add(new KeyedEntry<>(i, "material-" + i % 300));
+        }
+
+        List<KeyedEntry<String>> read = roundTrip(materials, Codecs.MATERIAL, 64);
+
+        assertEquals(materials, read);
+        assertTrue(read.get(0).value() == read.get(300).value(), "dictionary strings are shared");
+    }
+
+    @Test
+    void recordsWithoutContactOrMaterialsRoundTrip() {
+        List<MergedRecord> records = List.of(
+                MergedRecord.builder().setID(1).setSiteName("One").setAddress("1 Main St").build(),
+                MergedRecord.builder().setID(2).setSiteName("Two").setAddress("2 Main St")
+                        .setPointOfContact(new MergedRecord.PointOfContact("Ann", "Engineer", "555-2"))
+                        .setRequiredMaterials(Map.of("Wood", 3L, "Glass", 1L))
+                        .setRequiredEquipment(EnumSet.of(HeavyEquipment.values()[0])).build(),
+                MergedRecord.builder().setID(3).setSiteName("").setAddress("")
+                        .setRequiredMaterials(Map.of()).build());
+
+        List<MergedRecord> read = roundTrip(records, Codecs.MERGED_RECORD, 2);
+
+        assertEquals(records, read);
+        assertNull(read.get(0).contact());
+        assertEquals(Map.of(), read.get(2).requiredMaterials());
+    }
+
+    @Test
+    void equipmentIsReadBackAsTheSharedSets() {
+        HeavyEquipment[] equipment = HeavyEquipment.values();
+        List<KeyedEntry<? extends Set<HeavyEquipment>>> entries = List.of(
+                new KeyedEntry<>(1, EnumSet.noneOf(HeavyEquipment.class)),
+                new KeyedEntry<>(2, EnumSet.of(equipment[0])),
+                new KeyedEntry<>(3, EnumSet.allOf(HeavyEquipment.class)));
+
+        List<KeyedEntry<? extends Set<HeavyEquipment>>> read = roundTrip(entries, Codecs.EQUIPMENT_SET, 2);
+
+        assertEquals(entries, read);
+        for (KeyedEntry<? extends Set<HeavyEquipment>> entry : read) {
+            assertSame(EquipmentSet.of(entry.value()), entry.value());
+        }
+    }
+
+    @Test
+    void hashedRecordsKeepTheirStoredHash() {
+        HashedRecord record = new HashedRecord(
+                MergedRecord.builder().setID(7).setSiteName("Seven").setAddress("7 Main St").build(), -42L);
+
+        assertEquals(List.of(record), roundTrip(List.of(record), Codecs.HASHED_RECORD, 1));
+    }
+
+    @Test
+    void emptySourceWritesAnEmptyFile() {
+        assertEquals(List.of(), roundTrip(List.<KeyedEntry<String>>of(), Codecs.MATERIAL, 4));
+    }
+
+    @Test
+    void readingWithAnotherCodecFails() {
+        Path file = folder.resolve("materials.bin");
+        BinaryFiles.write(Flux.just(new KeyedEntry<>(1, "Wood")), file, Codecs.MATERIAL).block();
+
+        StepVerifier.create(BinaryFiles.read(file, Codecs.CONTACT))
+                .expectErrorMessage(file + " was written with codec 4, not 2")
+                .verify();
+    }
+
+    @Test
+    void failedWriteReportsTheSourceError() throws IOException {
+        Path file = folder.resolve("failed.bin");
+
+        StepVerifier.create(BinaryFiles.write(Flux.concat(Flux.just(new KeyedEntry<>(1, "Wood")),
+                        Flux.error(new IOException("boom"))), file, Codecs.MATERIAL))
+                .expectErrorSatisfies(error -> {
+                    assertInstanceOf(IOException.class, error);
+                    assertEquals("boom", error.getMessage());
+                })
+                .verify();
+        //closed, so it can be deleted right away on any platform
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,121 @@
+package binary;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryOutputTest {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final BinaryOutput out = new BinaryOutput(bytes, 1);
+
+    private BinaryInput input() throws IOException {
+        out.flush();
+        return new BinaryInput(new ByteArrayInputStream(bytes.toByteArray()), 1);
+    }
+
+    @Test
+    void varIntsRoundTripAtTheirLimits() throws IOException {
+        int[] values = {0, 127, 128, 16383, 16384, Integer.MAX_VALUE, Integer.MIN_VALUE, -1};
+        for (int value : values) {
+            out.writeVarInt(value);
+        }
+        out.writeVarLong(Long.MAX_VALUE);
+        out.writeVarLong(-1L);
+
+        BinaryInput in = input();
+        for (int value : values) {
+            assertEquals(value, in.readVarInt());
+        }
+        assertEquals(Long.MAX_VALUE, in.readVarLong());
+        assertEquals(-1L, in.readVarLong());
+    }
+
+    @Test
+    void varIntsUseOneByteUpTo127() throws IOException {
+        out.writeVarInt(127);
+        assertEquals(1, out.getBytesWritten());
+        out.writeVarInt(128);
+        assertEquals(3, out.getBytesWritten());
+        //negative ints are written as unsigned, so they take the full 5 bytes
+        out.writeVarInt(-1);
+        assertEquals(8, out.getBytesWritten());
+        out.writeVarLong(-1L);
+        assertEquals(18, out.getBytesWritten());
+    }
+
+    @Test
+    void zigzagKeepsSmallNegativeValuesSmall() throws IOException {
+        int[] values = {0, -1, 1, -64, 63, -65, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int value : values) {
+            out.writeSignedVarInt(value);
+        }
+        //-64 and 63 are the last values fitting in one byte
+        assertEquals(1 + 1 + 1 + 1 + 1 + 2 + 5 + 5, out.getBytesWritten());
+
+        BinaryInput in = input();
+        for (int value : values) {
+            assertEquals(value, in.readSignedVarInt());
+        }
+    }
+
+    @Test
+    void dictionaryCodesPastOneByteRoundTrip() throws IOException {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            values.add("material-" + i);
+        }
+        for (String value : values) {
+            out.writeDictionaryString(0, value);
+        }
+        long firstPass = out.getBytesWritten();
+        for (int i = values.size() - 1; i >= 0; i--) {
+            out.writeDictionaryString(0, values.get(i));
+        }
+        //codes are written + 1, so from code 127 on they take 2 bytes
+        assertEquals(127 + 2 * 173, out.getBytesWritten() - firstPass);
+
+        BinaryInput in = input();
+        List<String> read = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            read.add(in.readDictionaryString(0));
+        }
+        assertEquals(values, read);
+        for (int i = values.size() - 1; i >= 0; i--) {
+            //repeated strings are the instance read the first time
+            assertSame(read.get(i), in.readDictionaryString(0));
+        }
+    }
+
+    @Test
+    void unknownDictionaryCodeFails() throws IOException {
+        out.writeDictionaryString(0, "Wood");
+        out.writeVarInt(3);
+
+        BinaryInput in = input();
+        assertEquals("Wood", in.readDictionaryString(0));
+        IOException error = assertThrows(IOException.class, () -> in.readDictionaryString(0));
+        assertEquals("Unknown dictionary code 3", error.getMessage());
+    }
+
+    @Test
+    void stringsRoundTrip() throws IOException {
+        out.writeString("");
+        out.writeString("Gr\u00fc\u00dfe, \u6771\u4eac");
+        out.writeShort(0xABCD);
+        out.writeLong(Long.MIN_VALUE);
+
+        BinaryInput in = input();
+        assertEquals("", in.readString());
+        assertEquals("Gr\u00fc\u00dfe, \u6771\u4eac", in.readString());
+        assertEquals(0xABCD, in.readShort());
+        assertEquals(Long.MIN_VALUE, in.readLong());
+    }
+}
@@ -0,0 +1,151 @@
+package binary;
+
+import models.KeyedEntry;
+import models.MergedRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExternalSortTest {
+    private static final int RUN_SIZE = 64;
+
+    @TempDir
+    Path tempRoot;
+
+    /**
+     * Contacts with keys from 0 to 99, named after their position in the source so the order of equal keys shows
+     */
+    private static List<KeyedEntry<MergedRecord.PointOfContact>> entries(int count) {
+        Random random = new Random(7);
+        List<KeyedEntry<MergedRecord.PointOfContact>> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new KeyedEntry<>(random.nextInt(100),
+                    new MergedRecord.PointOfContact(String.valueOf(i), "Engineer", "555")));
+        }
+        return entries;
+    }
+
+    private static int position(KeyedEntry<MergedRecord.PointOfContact> entry) {
+        return Integer.parseInt(entry.value().name());
+    }
+
+    private Flux<KeyedEntry<MergedRecord.PointOfContact>> sort(Flux<KeyedEntry<MergedRecord.PointOfContact>> source) {
+        return ExternalSort.sort(source, Codecs.CONTACT, RUN_SIZE, tempRoot);
+    }
+
+    private long spilledRuns() throws IOException {
+        try (Stream<Path> folders = Files.list(tempRoot)) {
+            long runs = 0;
+            for (Path folder : folders.toList()) {
+                try (Stream<Path> files = Files.list(folder)) {
+                    runs += files.count();
+                }
+            }
+            return runs;
+        }
+    }
+
+    private void assertTempFilesDeleted() throws IOException {
+        try (Stream<Path> files = Files.list(tempRoot)) {
+            assertEquals(List.of(), files.toList());
+        }
+    }
+
+    @Test
+    void sortSpillingSeveralRunsIsStable() throws IOException {
+        List<KeyedEntry<MergedRecord.PointOfContact>> entries = entries(1000);
+        AtomicLong spilled = new AtomicLong(-1);
+
+        List<KeyedEntry<MergedRecord.PointOfContact>> sorted = sort(Flux.fromIterable(entries))
+                .doOnNext(entry -> {
+                    if (spilled.get() < 0) {
+                        spilled.set(spilledRunsUnchecked());
+                    }
+                })
+                .collectList()
+                .block();
+
+        //16 runs, the last one stays in memory
+        assertEquals(15, spilled.get());
+        List<KeyedEntry<MergedRecord.PointOfContact>> expected = new ArrayList<>(entries);
+        expected.sort(Comparator.comparingInt(KeyedEntry::key));
+        assertEquals(expected, sorted);
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).key() == sorted.get(i - 1).key()) {
+                assertTrue(position(sorted.get(i - 1)) < position(sorted.get(i)), "unstable at " + i);
+            }
+        }
+        assertTempFilesDeleted();
+    }
+
+    private long spilledRunsUnchecked() {
+        try {
+            return spilledRuns();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void sourceFittingInOneRunIsNotSpilled() {
+        List<KeyedEntry<MergedRecord.PointOfContact>> entries = entries(RUN_SIZE);
+
+        StepVerifier.create(sort(Flux.fromIterable(entries)).take(1))
+                .assertNext(entry -> assertEquals(0, spilledRunsUnchecked()))
+                .verifyComplete();
+    }
+
+    @Test
+    void tempFilesAreDeletedOnError() throws IOException {
+        Flux<KeyedEntry<MergedRecord.PointOfContact>> failing = Flux.concat(Flux.fromIterable(entries(500)),
+                Flux.error(new IOException("boom")));
+
+        StepVerifier.create(sort(failing))
+                .expectErrorMessage("boom")
+                .verify();
+
+        assertTempFilesDeleted();
+    }
+
+    @Test
+    void tempFilesAreDeletedOnCancel() throws Exception {
+        StepVerifier.create(sort(Flux.fromIterable(entries(1000))), 10)
+                .expectNextCount(10)
+                .thenCancel()
+                .verify();
+
+        //the delete runs asynchronously after a cancel
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (hasFolder()) {
+            assertTrue(System.nanoTime() - deadline < 0, "temp files left after cancel");
+            Thread.sleep(10);
+        }
+    }
+
+    private boolean hasFolder() throws IOException {
+        try (Stream<Path> files = Files.list(tempRoot)) {
+            return files.findAny().isPresent();
+        }
+    }
+
+    @Test
+    void runSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ExternalSort.sort(Flux.<KeyedEntry<String>>empty(), Codecs.MATERIAL, 0, tempRoot));
+    }
+}
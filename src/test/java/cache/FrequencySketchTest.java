@@ -0,0 +1,49 @@
+package cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrequencySketchTest {
+    @Test
+    void frequencyIsNeverUnderestimated() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int key = 0; key < 500; key++) {
+            for (int i = 0; i <= key % 5; i++) {
+                sketch.increment(key);
+            }
+        }
+        for (int key = 0; key < 500; key++) {
+            assertTrue(sketch.frequency(key) >= key % 5 + 1, "key " + key);
+        }
+    }
+
+    @Test
+    void countersSaturateAt15() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment(7);
+        }
+
+        assertEquals(15, sketch.frequency(7));
+    }
+
+    @Test
+    void countersAreHalvedAfterTenTimesTheWidthIncrements() {
+        //64 expected entries make a table of 64 longs, so the counters are halved on the 640th counted increment
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment(-1);
+        }
+        assertEquals(15, sketch.frequency(-1));
+
+        int others = 0;
+        while (sketch.frequency(-1) == 15 && others < 640) {
+            sketch.increment(others++);
+        }
+
+        assertEquals(640 - 15, others);
+        assertEquals(7, sketch.frequency(-1));
+    }
+}
@@ -0,0 +1,130 @@
+package cache;
+
+import models.MergedRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MergedRecordCacheTest {
+    @TempDir
+    Path folder;
+
+    private Path source;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void writeSource() throws IOException {
+        source = Files.writeString(folder.resolve("main.json"), "[]");
+    }
+
+    private static MergedRecord site(int id) {
+        return MergedRecord.builder().setID(id).setSiteName("site-" + id).setAddress(id + " Main St").build();
+    }
+
+    private MergedRecordCache cache(long maxBytes, IntFunction<Mono<MergedRecord>> loader) {
+        //checks the source on every lookup
+        return new MergedRecordCache(maxBytes, id -> {
+            loads.incrementAndGet();
+            return loader.apply(id);
+        }, List.of(source), Duration.ZERO);
+    }
+
+    @Test
+    void hitsDontLoadAgain() {
+        MergedRecordCache cache = cache(1 << 20, id -> Mono.just(site(id)));
+
+        assertEquals(site(1), cache.get(1).block());
+        assertEquals(site(1), cache.get(1).block());
+
+        assertEquals(1, loads.get());
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.entries());
+    }
+
+    @Test
+    void emptyLoadsAreNotCached() {
+        MergedRecordCache cache = cache(1 << 20, id -> Mono.empty());
+
+        StepVerifier.create(cache.get(1)).verifyComplete();
+        StepVerifier.create(cache.get(1)).verifyComplete();
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void cachedBytesStayUnderTheMaximum() {
+        long maxBytes = 20 * MergedRecordCache.weigh(site(100));
+        MergedRecordCache cache = cache(maxBytes, id -> Mono.just(site(id)));
+        for (int id = 100; id < 1000; id++) {
+            cache.get(id).block();
+        }
+
+        CacheStats stats = cache.stats();
+        assertTrue(stats.weightedBytes() <= maxBytes, "weighs " + stats.weightedBytes());
+        assertTrue(stats.evictions() > 0);
+    }
+
+    @Test
+    void modifiedSourceInvalidatesEveryEntry() throws IOException {
+        MergedRecordCache cache = cache(1 << 20, id -> Mono.just(site(id)));
+        cache.get(1).block();
+        cache.get(2).block();
+
+        Files.setLastModifiedTime(source, FileTime.from(Instant.now().plusSeconds(60)));
+        cache.get(1).block();
+
+        assertEquals(3, loads.get());
+        assertEquals(1, cache.stats().entries());
+    }
+
+    @Test
+    void loadInFlightDuringInvalidationIsNotCached() {
+        Sinks.One<MergedRecord> pending = Sinks.one();
+        MergedRecordCache cache = cache(1 << 20, id -> loads.get() == 1 ? pending.asMono() : Mono.just(site(id)));
+
+        StepVerifier.create(cache.get(1))
+                .then(() -> {
+                    cache.invalidate(1);
+                    pending.tryEmitValue(site(1));
+                })
+                .expectNext(site(1))
+                .verifyComplete();
+        assertEquals(0, cache.stats().entries());
+
+        //the stale record wasn't kept, so this loads again
+        assertEquals(site(1), cache.get(1).block());
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.stats().entries());
+    }
+
+    @Test
+    void invalidateDropsOneEntry() {
+        MergedRecordCache cache = cache(1 << 20, id -> Mono.just(site(id)));
+        cache.get(1).block();
+        cache.get(2).block();
+
+        cache.invalidate(1);
+        cache.get(1).block();
+        cache.get(2).block();
+
+        assertEquals(3, loads.get());
+    }
+}
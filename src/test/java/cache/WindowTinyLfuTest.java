@@ -0,0 +1,110 @@
+package cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WindowTinyLfuTest {
+    /**
+     * Fills a cache of 100 entries of weight 1, and reads all but the last one 3 times. The window holds 1 entry, so
+     * 1 to 99 end up in probation or protected with a frequency of 3, and 100 stays in the window unread.
+     */
+    private static WindowTinyLfu<Integer> hotCache() {
+        WindowTinyLfu<Integer> cache = new WindowTinyLfu<>(100, 1, value -> 1);
+        for (int key = 1; key <= 100; key++) {
+            cache.put(key, key);
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int key = 1; key < 100; key++) {
+                cache.get(key);
+            }
+        }
+        return cache;
+    }
+
+    @Test
+    void weightedSizeStaysUnderTheMaximum() {
+        WindowTinyLfu<Integer> cache = new WindowTinyLfu<>(1000, 25, value -> value);
+        Random random = new Random(42);
+        long totalWeight = 0;
+        for (int key = 0; key < 1000; key++) {
+            int weight = 1 + random.nextInt(50);
+            totalWeight += weight;
+            assertTrue(cache.put(key, weight));
+            assertTrue(cache.weightedSize() <= 1000, "weighs " + cache.weightedSize());
+            //mix in reads so entries move between the segments
+            cache.get(random.nextInt(key + 1));
+        }
+        assertTrue(cache.evictions() > 0);
+        assertEquals(totalWeight, cache.weightedSize() + cache.evictedWeight());
+    }
+
+    @Test
+    void replacingAValueUpdatesItsWeight() {
+        WindowTinyLfu<Integer> cache = new WindowTinyLfu<>(1000, 25, value -> value);
+        cache.put(1, 10);
+        cache.put(1, 30);
+
+        assertEquals(1, cache.size());
+        assertEquals(30, cache.weightedSize());
+        assertEquals(30, cache.get(1));
+    }
+
+    @Test
+    void valueHeavierThanTheCacheIsNotCached() {
+        WindowTinyLfu<Integer> cache = new WindowTinyLfu<>(100, 25, value -> value);
+        cache.put(1, 50);
+
+        assertFalse(cache.put(1, 101));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    void candidateSeenLessOftenThanTheProbationVictimIsRejected() {
+        WindowTinyLfu<Integer> cache = hotCache();
+        //one-off keys, each pushing the previous one out of the window
+        for (int key = 1000; key < 1100; key++) {
+            cache.put(key, key);
+        }
+
+        assertEquals(100, cache.size());
+        assertEquals(100, cache.evictions());
+        for (int key = 1; key < 100; key++) {
+            assertEquals(key, cache.get(key));
+        }
+        assertEquals(1099, cache.get(1099));
+    }
+
+    @Test
+    void candidateSeenMoreOftenThanTheProbationVictimIsAdmitted() {
+        WindowTinyLfu<Integer> cache = hotCache();
+        //misses count as well, a key read 5 times before it's loaded beats the hot keys read 3 times
+        for (int i = 0; i < 5; i++) {
+            assertNull(cache.get(2000));
+        }
+        cache.put(2000, 2000);
+        cache.put(2001, 2001);
+
+        assertEquals(100, cache.size());
+        //100 lost to a hot victim, then a hot victim lost to 2000
+        assertEquals(2, cache.evictions());
+        assertEquals(2000, cache.get(2000));
+        assertNull(cache.get(100));
+    }
+
+    @Test
+    void clearDropsEveryEntry() {
+        WindowTinyLfu<Integer> cache = hotCache();
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+        assertNull(cache.get(1));
+    }
+}
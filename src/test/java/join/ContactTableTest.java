@@ -0,0 +1,66 @@
+package join;
+
+import models.KeyedEntry;
+import models.MergedRecord;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ContactTableTest {
+    private static final int PAGE_SIZE = 1 << 20;
+
+    @Test
+    void contactsAreFoundInAnyOrder() {
+        ContactTable table = ContactTable.load(Flux.just(
+                new KeyedEntry<>(9, new MergedRecord.PointOfContact("Ann", "Engineer", "555-9")),
+                new KeyedEntry<>(-3, new MergedRecord.PointOfContact("", "", "")),
+                new KeyedEntry<>(4, new MergedRecord.PointOfContact("Zo\u00eb", "\u6240\u9577", "555-4")))).block();
+
+        assertEquals(3, table.size());
+        assertEquals(new MergedRecord.PointOfContact("Ann", "Engineer", "555-9"), table.get(9));
+        assertEquals(new MergedRecord.PointOfContact("", "", ""), table.get(-3));
+        assertEquals(new MergedRecord.PointOfContact("Zo\u00eb", "\u6240\u9577", "555-4"), table.get(4));
+        assertNull(table.get(5));
+    }
+
+    @Test
+    void laterContactReplacesTheEarlierOne() {
+        ContactTable table = ContactTable.load(Flux.just(
+                new KeyedEntry<>(1, new MergedRecord.PointOfContact("Ann", "Engineer", "555-1")),
+                new KeyedEntry<>(1, new MergedRecord.PointOfContact("Bob", "Foreman", "555-2")))).block();
+
+        assertEquals(1, table.size());
+        assertEquals(new MergedRecord.PointOfContact("Bob", "Foreman", "555-2"), table.get(1));
+    }
+
+    @Test
+    void contactsDontStraddlePages() {
+        //17 of these fit a page, the 18th has to start the next one
+        String name = "n".repeat(60_000);
+        ContactTable table = new ContactTable();
+        for (int id = 0; id < 40; id++) {
+            table.put(id, new MergedRecord.PointOfContact(name, "title-" + id, "555-" + id));
+        }
+
+        assertEquals(3L * PAGE_SIZE, table.offHeapBytes());
+        for (int id = 0; id < 40; id++) {
+            assertEquals(new MergedRecord.PointOfContact(name, "title-" + id, "555-" + id), table.get(id));
+        }
+    }
+
+    @Test
+    void fieldsAreLimitedTo64KiB() {
+        ContactTable table = new ContactTable();
+        String longest = "n".repeat(0xFFFF);
+        table.put(1, new MergedRecord.PointOfContact(longest, "", ""));
+        assertEquals(longest, table.get(1).name());
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> table.put(2, new MergedRecord.PointOfContact("", longest + "n", "")));
+        assertEquals("Contact field of 65536 bytes is over the 65535 bytes limit", error.getMessage());
+        assertNull(table.get(2));
+    }
+}
@@ -0,0 +1,57 @@
+package join;
+
+import models.EquipmentSet;
+import models.HeavyEquipment;
+import models.KeyedEntry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class EquipmentTableTest {
+    @Test
+    void setsAreReadBackAsTheSharedSetOfTheirMask() {
+        EquipmentTable table = EquipmentTable.load(Flux.<KeyedEntry<? extends Set<HeavyEquipment>>>just(
+                new KeyedEntry<>(7, EnumSet.of(HeavyEquipment.Bulldozer, HeavyEquipment.Dragline)),
+                new KeyedEntry<>(2, EnumSet.allOf(HeavyEquipment.class)),
+                new KeyedEntry<>(5, EquipmentSet.NONE))).block();
+
+        assertEquals(3, table.size());
+        assertEquals(EnumSet.of(HeavyEquipment.Bulldozer, HeavyEquipment.Dragline), table.get(7));
+        assertSame(EquipmentSet.of(EnumSet.allOf(HeavyEquipment.class)), table.get(2));
+        //an empty set is still a match, unlike a missing ID
+        assertSame(EquipmentSet.NONE, table.get(5));
+        assertEquals(0, table.mask(5));
+        assertEquals(-1, table.mask(6));
+        assertNull(table.get(6));
+    }
+
+    @Test
+    void laterSetReplacesTheEarlierOne() {
+        EquipmentTable table = new EquipmentTable();
+        table.put(1, EnumSet.of(HeavyEquipment.Excavator));
+        table.put(1, EnumSet.of(HeavyEquipment.Grader));
+
+        assertEquals(1, table.size());
+        assertEquals(EnumSet.of(HeavyEquipment.Grader), table.get(1));
+    }
+
+    @Test
+    void tableGrowsPastItsInitialArrays() {
+        EquipmentTable table = new EquipmentTable();
+        HeavyEquipment[] equipment = HeavyEquipment.values();
+        for (int id = 5000; id > 0; id--) {
+            table.put(id, EnumSet.of(equipment[id % equipment.length]));
+        }
+
+        assertEquals(5000, table.size());
+        for (int id = 1; id <= 5000; id++) {
+            assertEquals(1 << (id % equipment.length), table.mask(id));
+        }
+    }
+}
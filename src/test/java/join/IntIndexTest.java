@@ -0,0 +1,79 @@
+package join;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class IntIndexTest {
+    @Test
+    void unsortedKeysGetOrdinalsInInsertionOrder() {
+        IntIndex index = new IntIndex();
+        int[] keys = {42, -7, 0, Integer.MAX_VALUE, 3, Integer.MIN_VALUE, 1000};
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, index.putIfAbsent(keys[i]));
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, index.get(keys[i]));
+        }
+        assertEquals(keys.length, index.size());
+    }
+
+    @Test
+    void repeatedKeysKeepTheirOrdinal() {
+        IntIndex index = new IntIndex();
+        assertEquals(0, index.putIfAbsent(5));
+        assertEquals(1, index.putIfAbsent(9));
+        assertEquals(0, index.putIfAbsent(5));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void missingKeysAreNotFound() {
+        IntIndex index = new IntIndex();
+        assertEquals(-1, index.get(0));
+        index.putIfAbsent(1);
+        assertEquals(-1, index.get(0));
+        assertEquals(-1, index.get(2));
+        assertEquals(-1, index.get(-1));
+    }
+
+    @Test
+    void collidingKeysAreProbedPast() {
+        //keys 2^21 apart only differ above bit 20 of the hash, so they all start probing at the same slot of 32
+        IntIndex index = new IntIndex(8);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i, index.putIfAbsent(i << 21));
+        }
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i, index.get(i << 21));
+        }
+        assertEquals(-1, index.get(8 << 21));
+    }
+
+    @Test
+    void growingKeepsEveryOrdinal() {
+        IntIndex index = new IntIndex(1);
+        Random random = new Random(42);
+        int[] keys = random.ints(10_000).distinct().toArray();
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, index.putIfAbsent(keys[i]));
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, index.get(keys[i]), "key " + keys[i]);
+        }
+        assertEquals(keys.length, index.size());
+    }
+
+    @Test
+    void valueArraysDoubleOnlyWhenFull() {
+        int[] values = {1, 2};
+        assertSame(values, IntIndex.ensureCapacity(values, 1));
+        assertArrayEquals(new int[]{1, 2, 0, 0}, IntIndex.ensureCapacity(values, 2));
+        short[] masks = {3};
+        assertArrayEquals(new short[]{3, 0}, IntIndex.ensureCapacity(masks, 1));
+    }
+}
@@ -0,0 +1,63 @@
+package join;
+
+import models.HeavyEquipment;
+import models.KeyedEntry;
+import models.MergedRecord;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.EnumSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class LookupJoinTest {
+    private static final MergedRecord.PointOfContact ANN = new MergedRecord.PointOfContact("Ann", "Engineer", "555-1");
+    private static final MergedRecord.PointOfContact BOB = new MergedRecord.PointOfContact("Bob", "Foreman", "555-2");
+
+    private static LookupJoin join() {
+        return LookupJoin.load(Flux.just(new KeyedEntry<>(3, BOB), new KeyedEntry<>(1, ANN)),
+                Flux.just(new KeyedEntry<>(2, EnumSet.of(HeavyEquipment.Crawler)),
+                        new KeyedEntry<>(1, EnumSet.of(HeavyEquipment.Trencher)))).block();
+    }
+
+    private static MergedRecord.Builder site(int id) {
+        return MergedRecord.builder().setID(id).setSiteName("site-" + id).setAddress(id + " Main St")
+                .setRequiredMaterials(Map.of("Wood", 2L));
+    }
+
+    @Test
+    void recordWithoutMatchesIsReturnedAsIs() {
+        MergedRecord record = site(4).setPointOfContact(BOB).build();
+
+        assertSame(record, join().enrich(record));
+    }
+
+    @Test
+    void bothTablesAreJoined() {
+        MergedRecord enriched = join().enrich(site(1).build());
+
+        assertEquals(site(1).setPointOfContact(ANN).setRequiredEquipment(EnumSet.of(HeavyEquipment.Trencher)).build(),
+                enriched);
+    }
+
+    @Test
+    void recordKeepsItsOwnFieldsWhereTheTablesHaveNothing() {
+        LookupJoin join = join();
+
+        assertEquals(site(2).setPointOfContact(ANN).setRequiredEquipment(EnumSet.of(HeavyEquipment.Crawler)).build(),
+                join.enrich(site(2).setPointOfContact(ANN).build()));
+        assertEquals(site(3).setPointOfContact(BOB).setRequiredEquipment(EnumSet.of(HeavyEquipment.Grader)).build(),
+                join.enrich(site(3).setRequiredEquipment(EnumSet.of(HeavyEquipment.Grader)).build()));
+    }
+
+    @Test
+    void tablesOverrideTheRecordsOwnFields() {
+        MergedRecord record = site(1).setPointOfContact(BOB)
+                .setRequiredEquipment(EnumSet.of(HeavyEquipment.Grader)).build();
+
+        assertEquals(site(1).setPointOfContact(ANN).setRequiredEquipment(EnumSet.of(HeavyEquipment.Trencher)).build(),
+                join().enrich(record));
+    }
+}
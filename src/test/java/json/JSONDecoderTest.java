@@ -0,0 +1,189 @@
+package json;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.fasterxml.jackson.databind.exc.ValueInstantiationException;
+import models.HeavyEquipment;
+import models.KeyedEntry;
+import models.MergedRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JSONDecoderTest {
+    private static final TypeReference<MergedRecord> MERGED_RECORD_TYPEREF = new TypeReference<>() {};
+    private static final TypeReference<EnumSet<HeavyEquipment>> EQUIPMENT_TYPEREF = new TypeReference<>() {};
+
+    @TempDir
+    Path folder;
+
+    /**
+     * @param modelDeserializers false for databind's own record deserializers
+     */
+    private static JSONDecoder decoder(boolean modelDeserializers) {
+        return new JSONDecoder(null, ReaderThreads.BOUNDED_ELASTIC, modelDeserializers);
+    }
+
+    private Path write(String name, String json) throws IOException {
+        return Files.writeString(folder.resolve(name), json);
+    }
+
+    private Path materials(int count) throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int key = 0; key < count; key++) {
+            if (key > 0) {
+                json.append(',');
+            }
+            json.append("{\"").append(key).append("\":\"m").append(key).append("\"}");
+        }
+        Path file = folder.resolve("materials.json");
+        Files.writeString(file, json.append(']'));
+        return file;
+    }
+
+    @Test
+    void rangeReadsShareTheStatsOfTheirFile() throws IOException {
+        Path file = materials(1000);
+        SparseIndex index = SparseIndex.build(file, 16);
+        JSONDecoder decoder = new JSONDecoder(ReadAhead.DEFAULT);
+        for (int from = 0; from < 1000; from += 100) {
+            List<KeyedEntry<String>> entries = decoder.createKeyedRangeReader(file, index, String.class, from, from + 9)
+                    .collectList()
+                    .block();
+            assertEquals(10, entries.size());
+            assertEquals(from, entries.get(0).key());
+        }
+        assertEquals(1, decoder.getReadAheadStats().size());
+        assertEquals(file.toString(), decoder.getReadAheadStats().iterator().next().getName());
+    }
+
+    @Test
+    void staleSidecarIsReplacedWithoutLeavingTemporaryFiles() throws IOException {
+        Path file = materials(1000);
+        assertEquals(SparseIndex.build(file, 16).size(), SparseIndex.openOrBuild(file, 16).size());
+        Path stale = materials(500);
+
+        SparseIndex rebuilt = SparseIndex.openOrBuild(stale, 16);
+
+        SparseIndex loaded = SparseIndex.load(SparseIndex.sidecarOf(stale));
+        assertTrue(loaded.matches(stale));
+        assertEquals(rebuilt.size(), loaded.size());
+        try (Stream<Path> files = Files.list(folder)) {
+            assertEquals(Set.of("materials.json", "materials.json.idx"),
+                    files.map(f -> f.getFileName().toString()).collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    void pointReadsSkipReadAhead() throws IOException {
+        Path file = materials(1000);
+        SparseIndex index = SparseIndex.build(file, 16);
+        JSONDecoder decoder = new JSONDecoder(ReadAhead.DEFAULT, ReaderThreads.PLATFORM);
+        for (int key = 0; key < 1000; key += 37) {
+            List<KeyedEntry<String>> entries = decoder.createKeyedRangeReader(file, index, String.class, key, key)
+                    .collectList()
+                    .block();
+            assertEquals(List.of(new KeyedEntry<>(key, "m" + key)), entries);
+        }
+        assertTrue(decoder.getReadAheadStats().isEmpty());
+    }
+
+    @Test
+    void modelDeserializersDecodeTheBundledInputsLikeDatabind() {
+        JSONDecoder databind = decoder(false);
+        JSONDecoder models = decoder(true);
+
+        assertEquals(databind.createFluxReader("/input/main.json", MERGED_RECORD_TYPEREF).collectList().block(),
+                models.createFluxReader("/input/main.json", MERGED_RECORD_TYPEREF).collectList().block());
+        assertEquals(databind.createKeyedFluxReader("/input/poc.json", MergedRecord.PointOfContact.class)
+                        .collectList().block(),
+                models.createKeyedFluxReader("/input/poc.json", MergedRecord.PointOfContact.class)
+                        .collectList().block());
+        assertEquals(databind.createKeyedFluxReader("/input/equipment.json", EQUIPMENT_TYPEREF).collectList().block(),
+                models.createKeyedFluxReader("/input/equipment.json", EQUIPMENT_TYPEREF).collectList().block());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void unknownFieldsAreRejected(boolean modelDeserializers) throws IOException {
+        Path main = write("main.json", """
+                [{"id": 1, "siteName": "One", "address": "1 Main St", "owner": "Ann"}]""");
+
+        StepVerifier.create(decoder(modelDeserializers).createFluxReader(main, MERGED_RECORD_TYPEREF))
+                .expectErrorSatisfies(error -> assertInstanceOf(UnrecognizedPropertyException.class, error.getCause()))
+                .verify();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void equipmentNamesAreCaseInsensitive(boolean modelDeserializers) throws IOException {
+        Path equipment = write("equipment.json", """
+                [{"1": ["excavator", "BULLDOZER", "SkidSteer"]}]""");
+        Path main = write("main.json", """
+                [{"id": 1, "siteName": "One", "address": "1 Main St", "requiredEquipment": ["eXcAvAtOr"]}]""");
+        JSONDecoder decoder = decoder(modelDeserializers);
+
+        assertEquals(List.of(new KeyedEntry<>(1, EnumSet.of(HeavyEquipment.Excavator, HeavyEquipment.Bulldozer,
+                        HeavyEquipment.SkidSteer))),
+                decoder.createKeyedFluxReader(equipment, EQUIPMENT_TYPEREF).collectList().block());
+        //databind reads the record's equipment collection as a list, the model deserializer as a set
+        assertEquals(EnumSet.of(HeavyEquipment.Excavator), EnumSet.copyOf(
+                decoder.createFluxReader(main, MERGED_RECORD_TYPEREF).blockFirst().requiredEquipment()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void nullContactAndMaterialsAreLeftOut(boolean modelDeserializers) throws IOException {
+        Path main = write("main.json", """
+                [{"id": 1, "siteName": "One", "address": "1 Main St", "contact": null, "requiredMaterials": null}]""");
+
+        MergedRecord record = decoder(modelDeserializers).createFluxReader(main, MERGED_RECORD_TYPEREF).blockFirst();
+
+        assertEquals(new MergedRecord(1, "One", "1 Main St", null, null, null), record);
+        assertNull(record.contact());
+        assertNull(record.requiredMaterials());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void missingSiteNameFailsTheSameWay(boolean modelDeserializers) throws IOException {
+        Path main = write("main.json", """
+                [{"id": 1, "address": "1 Main St"}]""");
+
+        StepVerifier.create(decoder(modelDeserializers).createFluxReader(main, MERGED_RECORD_TYPEREF))
+                .expectErrorSatisfies(error -> {
+                    ValueInstantiationException cause = assertInstanceOf(ValueInstantiationException.class,
+                            error.getCause());
+                    assertEquals(MergedRecord.class, cause.getType().getRawClass());
+                })
+                .verify();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void incompleteContactFailsTheSameWay(boolean modelDeserializers) throws IOException {
+        Path poc = write("poc.json", """
+                [{"1": {"name": "Ann", "title": "Engineer"}}]""");
+
+        StepVerifier.create(decoder(modelDeserializers).createKeyedFluxReader(poc, MergedRecord.PointOfContact.class))
+                .expectError(ValueInstantiationException.class)
+                .verify();
+    }
+}
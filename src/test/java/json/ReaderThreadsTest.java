@@ -0,0 +1,92 @@
+package json;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReaderThreadsTest {
+    /**
+     * @return the source, noting the thread it gets subscribed on
+     */
+    private static <T> Flux<T> onThread(Flux<T> source, AtomicReference<Thread> reader, CountDownLatch subscribed) {
+        return Flux.defer(() -> {
+            reader.set(Thread.currentThread());
+            subscribed.countDown();
+            return source;
+        });
+    }
+
+    /**
+     * A dedicated scheduler ends its single thread once disposed, so a reader thread that terminates shows the
+     * scheduler of the source was released
+     */
+    private static void assertReleased(ReaderThreads threads, String name, Thread reader) throws InterruptedException {
+        assertTrue(reader.getName().startsWith("json-reader-" + name), reader.getName());
+        assertEquals(threads == ReaderThreads.VIRTUAL, reader.isVirtual());
+        assertTrue(reader.join(Duration.ofSeconds(5)), reader + " is still running");
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ReaderThreads.class, names = {"PLATFORM", "VIRTUAL"})
+    void readerIsReleasedOnComplete(ReaderThreads threads) throws InterruptedException {
+        AtomicReference<Thread> reader = new AtomicReference<>();
+        Flux<Integer> source = onThread(Flux.just(1, 2, 3), reader, new CountDownLatch(1));
+
+        StepVerifier.create(JSONDecoder.onReaderThread("complete", source, threads))
+                .expectNext(1, 2, 3)
+                .verifyComplete();
+        assertReleased(threads, "complete", reader.get());
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ReaderThreads.class, names = {"PLATFORM", "VIRTUAL"})
+    void readerIsReleasedOnError(ReaderThreads threads) throws InterruptedException {
+        AtomicReference<Thread> reader = new AtomicReference<>();
+        Flux<Integer> source = onThread(Flux.error(new IllegalStateException("boom")), reader, new CountDownLatch(1));
+
+        StepVerifier.create(JSONDecoder.onReaderThread("error", source, threads))
+                .verifyErrorMessage("boom");
+        assertReleased(threads, "error", reader.get());
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ReaderThreads.class, names = {"PLATFORM", "VIRTUAL"})
+    void readerIsReleasedOnCancel(ReaderThreads threads) throws InterruptedException {
+        AtomicReference<Thread> reader = new AtomicReference<>();
+        CountDownLatch subscribed = new CountDownLatch(1);
+        Flux<Integer> source = onThread(Flux.never(), reader, subscribed);
+
+        StepVerifier.create(JSONDecoder.onReaderThread("cancel", source, threads))
+                .expectSubscription()
+                .then(() -> {
+                    try {
+                        assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .thenCancel()
+                .verify();
+        assertReleased(threads, "cancel", reader.get());
+    }
+
+    @Test
+    void sharedPoolIsNotDisposed() {
+        StepVerifier.create(JSONDecoder.onReaderThread("shared", Flux.just(1), ReaderThreads.BOUNDED_ELASTIC))
+                .expectNext(1)
+                .verifyComplete();
+        assertFalse(Schedulers.boundedElastic().isDisposed());
+    }
+}
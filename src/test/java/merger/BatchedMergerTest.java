@@ -0,0 +1,187 @@
+package merger;
+
+import metrics.LocalMetricsRegistry;
+import metrics.Metrics;
+import metrics.MetricsRegistry;
+import models.HeavyEquipment;
+import models.KeyedEntry;
+import models.MergedRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchedMergerTest {
+    private static final String[] MATERIALS = {"Wood", "Glass", "Brass", "Steel"};
+    private static final HeavyEquipment[] EQUIPMENT = HeavyEquipment.values();
+
+    private final List<MergedRecord> main = new ArrayList<>();
+    private final List<KeyedEntry<EnumSet<HeavyEquipment>>> equipment = new ArrayList<>();
+    private final List<KeyedEntry<String>> materials = new ArrayList<>();
+    private final List<KeyedEntry<MergedRecord.PointOfContact>> contacts = new ArrayList<>();
+
+    /**
+     * Every 10th ID only has side inputs, and IDs have 0 to 3 materials, so with the odd batch sizes below keys and
+     * the materials of one ID land on both sides of batch boundaries
+     */
+    private void generate(int count) {
+        for (int id = 1; id <= count; id++) {
+            if (id % 10 != 0) {
+                main.add(MergedRecord.builder().setID(id).setSiteName("site-" + id).setAddress(id + " Main St").build());
+            }
+            if (id % 3 == 0) {
+                contacts.add(new KeyedEntry<>(id, new MergedRecord.PointOfContact("n" + id, "Engineer", "555")));
+            }
+            if (id % 4 == 0) {
+                equipment.add(new KeyedEntry<>(id, EnumSet.of(EQUIPMENT[id % EQUIPMENT.length])));
+            }
+            for (int m = 0; m < id % 4; m++) {
+                materials.add(new KeyedEntry<>(id, MATERIALS[(id + m) % MATERIALS.length]));
+            }
+        }
+    }
+
+    private static <T> Flux<List<T>> batches(List<T> elements, int batchSize) {
+        return Flux.fromIterable(elements).buffer(batchSize);
+    }
+
+    private List<MergedRecord> merge() {
+        return new Merger(Flux.fromIterable(main), Flux.fromIterable(equipment), Flux.fromIterable(materials),
+                Flux.fromIterable(contacts))
+                .run()
+                .collectList()
+                .block();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 256, 4096})
+    void flattenedChunksMatchThePerElementMerge(int chunkSize) {
+        generate(5000);
+        List<MergedRecord> expected = merge();
+
+        List<MergedRecord> batched = new BatchedMerger(batches(main, 7), batches(equipment, 11),
+                batches(materials, 3), batches(contacts, 5))
+                .runFlattened(chunkSize)
+                .collectList()
+                .block();
+
+        assertEquals(4500, expected.size());
+        assertEquals(expected, batched);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 256, 4096})
+    void chunksHoldAtMostChunkSizeRecords(int chunkSize) {
+        generate(5000);
+
+        List<List<MergedRecord>> chunks = new BatchedMerger(batches(main, 7), batches(equipment, 11),
+                batches(materials, 3), batches(contacts, 5))
+                .run(chunkSize)
+                .collectList()
+                .block();
+
+        int total = 0;
+        for (List<MergedRecord> chunk : chunks) {
+            assertTrue(!chunk.isEmpty() && chunk.size() <= chunkSize, "chunk of " + chunk.size());
+            total += chunk.size();
+        }
+        assertEquals(4500, total);
+    }
+
+    @Test
+    void materialsOfOneIdSpanningTwoBatchesAreCountedOnce() {
+        main.add(MergedRecord.builder().setID(1).setSiteName("One").setAddress("1 Main St").build());
+        main.add(MergedRecord.builder().setID(2).setSiteName("Two").setAddress("2 Main St").build());
+        materials.add(new KeyedEntry<>(1, "Wood"));
+        materials.add(new KeyedEntry<>(2, "Wood"));
+        materials.add(new KeyedEntry<>(2, "Glass"));
+        materials.add(new KeyedEntry<>(2, "Wood"));
+
+        List<MergedRecord> batched = new BatchedMerger(batches(main, 1), batches(equipment, 1),
+                batches(materials, 2), batches(contacts, 1))
+                .runFlattened(1)
+                .collectList()
+                .block();
+
+        assertEquals(merge(), batched);
+        assertEquals(Map.of("Wood", 2L, "Glass", 1L), batched.get(1).requiredMaterials());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 256, 4096})
+    void emptySourcesMatchThePerElementMerge(int chunkSize) {
+        generate(1000);
+        equipment.clear();
+        contacts.clear();
+        List<MergedRecord> expected = merge();
+
+        Flux<List<KeyedEntry<MergedRecord.PointOfContact>>> emptyBatches = Flux.just(List.of(), List.of());
+        List<MergedRecord> batched = new BatchedMerger(batches(main, 7), Flux.empty(), batches(materials, 3),
+                emptyBatches)
+                .runFlattened(chunkSize)
+                .collectList()
+                .block();
+
+        assertEquals(900, expected.size());
+        assertEquals(expected, batched);
+    }
+
+    @Test
+    void emptyEquipmentSetsAreCountedAsNoOps() {
+        generate(10);
+        equipment.add(new KeyedEntry<>(11, EnumSet.noneOf(HeavyEquipment.class)));
+        main.add(MergedRecord.builder().setID(11).setSiteName("Eleven").setAddress("11 Main St").build());
+        LocalMetricsRegistry registry = new LocalMetricsRegistry();
+        Metrics.use(registry);
+        try {
+            List<MergedRecord> expected = merge();
+            List<MergedRecord> batched = new BatchedMerger(batches(main, 7), batches(equipment, 11),
+                    batches(materials, 3), batches(contacts, 5))
+                    .runFlattened(256)
+                    .collectList()
+                    .block();
+            assertEquals(expected, batched);
+        } finally {
+            Metrics.use(MetricsRegistry.NOOP);
+        }
+        assertEquals(2, registry.counter("merge.noOpMarkers").sum());
+    }
+
+    @Test
+    void unsortedMaterialsAcrossBatchesAreReportedByName() {
+        main.add(MergedRecord.builder().setID(1).setSiteName("One").setAddress("1 Main St").build());
+        main.add(MergedRecord.builder().setID(2).setSiteName("Two").setAddress("2 Main St").build());
+        materials.add(new KeyedEntry<>(1, "Wood"));
+        materials.add(new KeyedEntry<>(2, "Wood"));
+        materials.add(new KeyedEntry<>(1, "Glass"));
+
+        StepVerifier.create(new BatchedMerger(batches(main, 1), Flux.empty(), batches(materials, 2), Flux.empty())
+                        .runFlattened(1))
+                .expectErrorMessage("materials is not sorted by key: 1 came after 2")
+                .verify();
+    }
+
+    @Test
+    void emptyMainSourceMergesNothing() {
+        generate(100);
+        main.clear();
+
+        List<MergedRecord> batched = new BatchedMerger(Flux.empty(), batches(equipment, 11), batches(materials, 3),
+                batches(contacts, 5))
+                .runFlattened(256)
+                .collectList()
+                .block();
+
+        assertEquals(List.of(), merge());
+        assertEquals(List.of(), batched);
+    }
+}
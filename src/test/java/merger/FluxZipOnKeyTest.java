@@ -0,0 +1,173 @@
+package merger;
+
+import models.KeyedEntry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FluxZipOnKeyTest {
+    /**
+     * @return entries of the keys, each valued name + key so the emitted lists show which source contributed
+     */
+    private static Flux<KeyedEntry<String>> source(String name, int... keys) {
+        List<KeyedEntry<String>> entries = new ArrayList<>();
+        for (int key : keys) {
+            entries.add(new KeyedEntry<>(key, name + key));
+        }
+        return Flux.fromIterable(entries);
+    }
+
+    private static List<String> add(List<String> values, KeyedEntry<String> entry) {
+        values.add(entry.value());
+        return values;
+    }
+
+    private static Flux<List<String>> zip(List<Flux<KeyedEntry<String>>> sources, int prefetch) {
+        return FluxZipOnKey.zipOnKey(sources, KeyedEntry::key, ArrayList::new, FluxZipOnKeyTest::add, prefetch);
+    }
+
+    private static Flux<List<String>> zip(List<Flux<KeyedEntry<String>>> sources) {
+        return zip(sources, 8);
+    }
+
+    private static FluxZipOnKey.SourceBinding<List<String>, KeyedEntry<String>> binding(
+            Flux<KeyedEntry<String>> source) {
+        return new FluxZipOnKey.SourceBinding<>(source, KeyedEntry::key, FluxZipOnKeyTest::add);
+    }
+
+    @Test
+    void keysAreEmittedInOrderAcrossSources() {
+        StepVerifier.create(zip(List.of(source("a", 1, 3, 5), source("b", 2, 3, 6), source("c", 3, 4))))
+                .expectNext(List.of("a1"), List.of("b2"), List.of("a3", "b3", "c3"), List.of("c4"), List.of("a5"),
+                        List.of("b6"))
+                .verifyComplete();
+    }
+
+    @Test
+    void repeatedKeysFoldIntoOneValueInSourceOrder() {
+        StepVerifier.create(zip(List.of(source("a", 1, 1, 2), source("b", 1, 2, 2))))
+                .expectNext(List.of("a1", "a1", "b1"), List.of("a2", "b2", "b2"))
+                .verifyComplete();
+    }
+
+    @Test
+    void emptySourcesAreSkipped() {
+        StepVerifier.create(zip(List.of(source("a"), source("b", 1, 2), source("c"))))
+                .expectNext(List.of("b1"), List.of("b2"))
+                .verifyComplete();
+        StepVerifier.create(zip(List.of(source("a"), source("b"))))
+                .verifyComplete();
+        StepVerifier.create(zip(List.of()))
+                .verifyComplete();
+    }
+
+    @Test
+    void upstreamErrorCancelsTheOtherSources() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flux<KeyedEntry<String>> endless = Flux.concat(source("a", 1), Flux.<KeyedEntry<String>>never())
+                .doOnCancel(() -> cancelled.set(true));
+        Flux<KeyedEntry<String>> failing = Flux.concat(source("b", 1),
+                Flux.error(new IllegalArgumentException("boom")));
+
+        //the error is eager: key 1 is never emitted, as the endless source never moves past it
+        StepVerifier.create(zip(List.of(endless, failing)))
+                .expectErrorMessage("boom")
+                .verify();
+        assertTrue(cancelled.get());
+    }
+
+    @Test
+    void unsortedSourceFailsAndCancelsTheOtherSources() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flux<KeyedEntry<String>> sorted = Flux.concat(source("a", 1, 5), Flux.<KeyedEntry<String>>never())
+                .doOnCancel(() -> cancelled.set(true));
+
+        StepVerifier.create(zip(List.of(sorted, source("b", 3, 2))))
+                .expectNext(List.of("a1"))
+                .expectErrorMessage("Source 1 is not sorted by key: 2 came after 3")
+                .verify();
+        assertTrue(cancelled.get());
+    }
+
+    @Test
+    void cancellingMidDrainCancelsEverySource() {
+        AtomicBoolean firstCancelled = new AtomicBoolean();
+        AtomicBoolean secondCancelled = new AtomicBoolean();
+        Flux<KeyedEntry<String>> first = source("a", 0, 1, 2, 3, 4, 5, 6, 7, 8, 9)
+                .doOnCancel(() -> firstCancelled.set(true));
+        Flux<KeyedEntry<String>> second = source("b", 0, 2, 4, 6, 8, 10, 12, 14, 16, 18)
+                .doOnCancel(() -> secondCancelled.set(true));
+
+        //take cancels from within onNext, while the drain loop still has queued keys and neither source completed
+        StepVerifier.create(zip(List.of(first, second), 4).take(3))
+                .expectNext(List.of("a0", "b0"), List.of("a1"), List.of("a2", "b2"))
+                .verifyComplete();
+        assertTrue(firstCancelled.get());
+        assertTrue(secondCancelled.get());
+    }
+
+    @Test
+    void boundedDemandOnlyPullsThePrefetch() {
+        AtomicLong firstRequested = new AtomicLong();
+        AtomicLong secondRequested = new AtomicLong();
+        Flux<KeyedEntry<String>> first = Flux.range(0, 100).map(key -> new KeyedEntry<>(key, "a" + key))
+                .doOnRequest(firstRequested::addAndGet);
+        Flux<KeyedEntry<String>> second = Flux.range(0, 100).map(key -> new KeyedEntry<>(key, "b" + key))
+                .doOnRequest(secondRequested::addAndGet);
+
+        StepVerifier.create(zip(List.of(first, second), 8), 2)
+                .expectNext(List.of("a0", "b0"), List.of("a1", "b1"))
+                .thenRequest(1)
+                .expectNext(List.of("a2", "b2"))
+                .thenCancel()
+                .verify();
+        //3 keys and the heads of the 4th only take 4 of the 8 prefetched, below the replenish limit of 6
+        assertEquals(8, firstRequested.get());
+        assertEquals(8, secondRequested.get());
+    }
+
+    @Test
+    void requestsNearLongMaxValueAreCapped() {
+        Flux<List<String>> merged = zip(List.of(
+                Flux.range(0, 1000).map(key -> new KeyedEntry<>(key, "a" + key)),
+                Flux.range(0, 1000).filter(key -> key % 2 == 0).map(key -> new KeyedEntry<>(key, "b" + key))));
+
+        //the second request overflows the first, and has to cap at Long.MAX_VALUE
+        StepVerifier.create(merged, Long.MAX_VALUE - 1)
+                .thenRequest(Long.MAX_VALUE - 1)
+                .expectNextCount(1000)
+                .verifyComplete();
+        StepVerifier.create(merged, 1)
+                .expectNext(List.of("a0", "b0"))
+                .thenRequest(Long.MAX_VALUE)
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(999)
+                .verifyComplete();
+    }
+
+    @Test
+    void batchedSourcesAreChunked() {
+        Flux<List<KeyedEntry<String>>> batches = Flux.just(
+                List.of(new KeyedEntry<>(1, "a1"), new KeyedEntry<>(2, "a2")),
+                List.of(),
+                List.of(new KeyedEntry<>(2, "a2"), new KeyedEntry<>(5, "a5")));
+        List<FluxZipOnKey.SourceBinding<List<String>, KeyedEntry<String>>> sources = List.of(
+                FluxZipOnKey.SourceBinding.batched(batches, KeyedEntry::key, FluxZipOnKeyTest::add),
+                binding(source("b", 2, 3, 4)));
+
+        //a repeated key across batches folds into one value, and the last chunk is only partial
+        StepVerifier.create(FluxZipOnKey.zipOnKeyChunked(sources, ArrayList::new, 2, 2))
+                .expectNext(List.of(List.of("a1"), List.of("a2", "a2", "b2")))
+                .expectNext(List.of(List.of("b3"), List.of("b4")))
+                .expectNext(List.of(List.of("a5")))
+                .verifyComplete();
+    }
+}
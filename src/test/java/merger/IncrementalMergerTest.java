@@ -0,0 +1,151 @@
+package merger;
+
+import binary.BinaryFiles;
+import binary.Codecs;
+import metrics.LocalMetricsRegistry;
+import metrics.Metrics;
+import metrics.MetricsRegistry;
+import models.HashedRecord;
+import models.KeyedEntry;
+import models.MergedRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalMergerTest {
+    @TempDir
+    Path folder;
+
+    private Path state;
+
+    @BeforeEach
+    void setUp() {
+        state = folder.resolve("state.bin");
+    }
+
+    private static MergedRecord site(int id) {
+        return MergedRecord.builder().setID(id).setSiteName("site-" + id).setAddress(id + " Main St").build();
+    }
+
+    private static KeyedEntry<MergedRecord.PointOfContact> contact(int id, String name) {
+        return new KeyedEntry<>(id, new MergedRecord.PointOfContact(name, "Engineer", "555-" + id));
+    }
+
+    private IncrementalMerger merger(Flux<MergedRecord> main, List<KeyedEntry<MergedRecord.PointOfContact>> contacts,
+                                     List<KeyedEntry<String>> materials) {
+        return new IncrementalMerger(state, main, Flux.empty(), Flux.fromIterable(materials),
+                Flux.fromIterable(contacts));
+    }
+
+    private List<MergedRecord> run(IncrementalMerger merger) {
+        return merger.run().collectList().block();
+    }
+
+    /**
+     * Creates the state from full inputs for IDs 1 to 3
+     */
+    private List<MergedRecord> seed() {
+        return run(merger(Flux.just(site(1), site(2), site(3)),
+                List.of(contact(1, "Ann"), contact(2, "Bob"), contact(3, "Cy")),
+                List.of(new KeyedEntry<>(1, "Wood"), new KeyedEntry<>(1, "Wood"), new KeyedEntry<>(3, "Glass"))));
+    }
+
+    private List<MergedRecord> readState() {
+        return BinaryFiles.read(state, Codecs.HASHED_RECORD)
+                .map(HashedRecord::record)
+                .collectList()
+                .block();
+    }
+
+    @Test
+    void firstRunEmitsEveryRecordAndSwapsInTheState() {
+        List<MergedRecord> emitted = seed();
+
+        assertEquals(List.of(1, 2, 3), emitted.stream().map(MergedRecord::id).toList());
+        assertEquals(Map.of("Wood", 2L), emitted.get(0).requiredMaterials());
+        assertEquals(emitted, readState());
+        assertFalse(Files.exists(folder.resolve("state.bin.next")));
+    }
+
+    @Test
+    void onlyChangedRecordsAreEmitted() {
+        seed();
+
+        //Bob's contact changes, Cy's is sent again as is
+        List<MergedRecord> emitted = run(merger(Flux.empty(), List.of(contact(2, "Bea"), contact(3, "Cy")),
+                List.of()));
+
+        assertEquals(1, emitted.size());
+        assertEquals(2, emitted.get(0).id());
+        assertEquals("Bea", emitted.get(0).contact().name());
+        List<MergedRecord> newState = readState();
+        assertEquals(List.of(1, 2, 3), newState.stream().map(MergedRecord::id).toList());
+        assertEquals("Bea", newState.get(1).contact().name());
+        assertEquals("Cy", newState.get(2).contact().name());
+    }
+
+    @Test
+    void deltasOnlyReplaceTheirOwnFields() {
+        List<MergedRecord> seeded = seed();
+
+        List<MergedRecord> emitted = run(merger(Flux.just(MergedRecord.builder().setID(1).setSiteName("renamed")
+                .setAddress("1 Main St").build()), List.of(), List.of()));
+
+        assertEquals(1, emitted.size());
+        assertEquals("renamed", emitted.get(0).siteName());
+        assertEquals(seeded.get(0).contact(), emitted.get(0).contact());
+        assertEquals(seeded.get(0).requiredMaterials(), emitted.get(0).requiredMaterials());
+    }
+
+    @Test
+    void runWithoutDeltasEmitsNothingAndKeepsTheRecords() {
+        List<MergedRecord> seeded = seed();
+
+        assertEquals(List.of(), run(merger(Flux.empty(), List.of(), List.of())));
+        assertEquals(seeded, readState());
+    }
+
+    @Test
+    void failedRunLeavesTheOldStateIntact() throws IOException {
+        seed();
+        byte[] before = Files.readAllBytes(state);
+
+        Flux<MergedRecord> failing = Flux.concat(Flux.just(site(4)), Flux.error(new IOException("boom")));
+        StepVerifier.create(merger(failing, List.of(contact(2, "Bea")), List.of()).run())
+                .thenConsumeWhile(record -> true)
+                .expectErrorMessage("boom")
+                .verify();
+
+        assertArrayEquals(before, Files.readAllBytes(state));
+    }
+
+    @Test
+    void deltasForUnknownIdsAreDroppedAndCounted() {
+        seed();
+        LocalMetricsRegistry registry = new LocalMetricsRegistry();
+        Metrics.use(registry);
+        List<MergedRecord> emitted;
+        try {
+            emitted = run(merger(Flux.empty(), List.of(contact(2, "Bea"), contact(9, "Nobody")), List.of()));
+        } finally {
+            Metrics.use(MetricsRegistry.NOOP);
+        }
+
+        assertEquals(List.of(2), emitted.stream().map(MergedRecord::id).toList());
+        assertEquals(1, registry.counter("merge.orphanIds").sum());
+        assertTrue(readState().stream().noneMatch(record -> record.id() == 9));
+    }
+}
@@ -0,0 +1,72 @@
+package merger;
+
+import json.JSONDecoder;
+import metrics.LocalMetricsRegistry;
+import metrics.Metrics;
+import metrics.MetricsRegistry;
+import models.MergedRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndexedMergerTest {
+    @TempDir
+    Path folder;
+
+    @BeforeEach
+    void writeInputs() throws IOException {
+        Files.writeString(folder.resolve("main.json"), """
+                [{"id": 1, "siteName": "One", "address": "1 Main St"},
+                 {"id": 3, "siteName": "Three", "address": "3 Main St"}]""");
+        Files.writeString(folder.resolve("poc.json"), """
+                [{"1": {"name": "Ann", "title": "Engineer", "phoneNumber": "555-1"}},
+                 {"2": {"name": "Bob", "title": "Architect", "phoneNumber": "555-2"}},
+                 {"3": {"name": "Cy", "title": "Supervisor", "phoneNumber": "555-3"}}]""");
+        Files.writeString(folder.resolve("equipment.json"), """
+                [{"2": ["Excavator"]}]""");
+        Files.writeString(folder.resolve("materials.json"), """
+                [{"2": "Wood"}, {"3": "Glass"}, {"3": "Glass"}]""");
+    }
+
+    @Test
+    void getMergesTheSideInputsOfAnId() throws IOException {
+        IndexedMerger merger = IndexedMerger.open(new JSONDecoder(), folder, 1);
+        StepVerifier.create(merger.get(3))
+                .assertNext(record -> {
+                    assertEquals("Three", record.siteName());
+                    assertEquals("Cy", record.contact().name());
+                    assertEquals(Map.of("Glass", 2L), record.requiredMaterials());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void getCompletesEmptyForAnIdOnlyInTheSideInputs() throws IOException {
+        IndexedMerger merger = IndexedMerger.open(new JSONDecoder(), folder, 1);
+        StepVerifier.create(merger.get(2))
+                .verifyComplete();
+    }
+
+    @Test
+    void runDropsIdsWithoutAMainRecord() throws IOException {
+        IndexedMerger merger = IndexedMerger.open(new JSONDecoder(), folder, 1);
+        LocalMetricsRegistry registry = new LocalMetricsRegistry();
+        Metrics.use(registry);
+        try {
+            StepVerifier.create(merger.restrict(new KeyRange(1, 3)).run().map(MergedRecord::id))
+                    .expectNext(1, 3)
+                    .verifyComplete();
+        } finally {
+            Metrics.use(MetricsRegistry.NOOP);
+        }
+        assertEquals(1, registry.counter("merge.orphanIds").sum());
+    }
+}
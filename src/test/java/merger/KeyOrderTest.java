@@ -0,0 +1,67 @@
+package merger;
+
+import models.KeyedEntry;
+import models.MergedRecord;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class KeyOrderTest {
+    private static MergedRecord site(int id) {
+        return MergedRecord.builder().setID(id).setSiteName("site-" + id).setAddress(id + " Main St").build();
+    }
+
+    @Test
+    void repeatedKeysAreSorted() {
+        StepVerifier.create(KeyOrder.requireSorted(Flux.just(1, 2, 2, 5), key -> key, "keys"))
+                .expectNext(1, 2, 2, 5)
+                .verifyComplete();
+    }
+
+    @Test
+    void lowerKeyFailsWithTheNameOfTheSource() {
+        StepVerifier.create(KeyOrder.requireSorted(Flux.just(1, 3, 2, 4), key -> key, "keys"))
+                .expectNext(1, 3)
+                .expectErrorSatisfies(error -> {
+                    assertInstanceOf(IllegalStateException.class, error);
+                    assertEquals("keys is not sorted by key: 2 came after 3", error.getMessage());
+                })
+                .verify();
+    }
+
+    @Test
+    void zipOnKeyFailsOnAnUnsortedSource() {
+        Flux<List<Integer>> merged = FluxZipOnKey.zipOnKey(List.of(Flux.just(1, 5), Flux.just(3, 2)),
+                (Integer key) -> key, ArrayList::new, (List<Integer> keys, Integer key) -> {
+                    keys.add(key);
+                    return keys;
+                });
+
+        StepVerifier.create(merged)
+                .expectNext(List.of(1))
+                .expectErrorMessage("Source 1 is not sorted by key: 2 came after 3")
+                .verify();
+    }
+
+    @Test
+    void mergerNamesUnsortedMaterials() {
+        Flux<KeyedEntry<String>> materials = Flux.just(new KeyedEntry<>(2, "Wood"), new KeyedEntry<>(1, "Glass"));
+
+        StepVerifier.create(new Merger(Flux.just(site(1), site(2)), Flux.empty(), materials, Flux.empty()).run())
+                .expectErrorMessage("materials is not sorted by key: 1 came after 2")
+                .verify();
+    }
+
+    @Test
+    void mergerNamesTheUnsortedSource() {
+        StepVerifier.create(new Merger(Flux.just(site(2), site(1)), Flux.empty(), Flux.empty(), Flux.empty()).run())
+                .expectErrorMessage("Source 0 is not sorted by key: 1 came after 2")
+                .verify();
+    }
+}
@@ -0,0 +1,56 @@
+package merger;
+
+import json.JSONDecoder;
+import models.MergedRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PartitionedMergerTest {
+    private static final String[] MATERIALS = {"Wood", "Glass", "Brass"};
+
+    @TempDir
+    Path folder;
+
+    private void writeInputs(int count) throws IOException {
+        StringBuilder main = new StringBuilder("[");
+        StringBuilder contacts = new StringBuilder("[");
+        StringBuilder equipment = new StringBuilder("[");
+        StringBuilder materials = new StringBuilder("[");
+        for (int id = 1000; id < 1000 + count; id++) {
+            String separator = id == 1000 ? "" : ",";
+            main.append(separator).append("{\"id\":%d,\"siteName\":\"site-%d\",\"address\":\"%d Main St\"}"
+                    .formatted(id, id, id));
+            contacts.append(separator).append("{\"%d\":{\"name\":\"n%d\",\"title\":\"Engineer\",\"phoneNumber\":\"555\"}}"
+                    .formatted(id, id));
+            equipment.append(separator).append("{\"%d\":[\"Excavator\",\"Grader\"]}".formatted(id));
+            for (int m = 0; m <= id % 3; m++) {
+                materials.append(materials.length() == 1 ? "" : ",")
+                        .append("{\"%d\":\"%s\"}".formatted(id, MATERIALS[m]));
+            }
+        }
+        Files.writeString(folder.resolve("main.json"), main.append(']'));
+        Files.writeString(folder.resolve("poc.json"), contacts.append(']'));
+        Files.writeString(folder.resolve("equipment.json"), equipment.append(']'));
+        Files.writeString(folder.resolve("materials.json"), materials.append(']'));
+    }
+
+    @Test
+    void partitionsMergeLikeASingleMerge() throws IOException {
+        writeInputs(2000);
+        JSONDecoder decoder = new JSONDecoder();
+        IndexedMerger indexed = IndexedMerger.open(decoder, folder, 16);
+        List<MergedRecord> expected = indexed.restrict(KeyRange.ALL).run().collectList().block();
+        assertEquals(2000, expected.size());
+        for (int partitions : new int[]{1, 3, 8}) {
+            List<MergedRecord> partitioned = indexed.partition(partitions).run().collectList().block();
+            assertEquals(expected, partitioned, partitions + " partitions");
+        }
+    }
+}
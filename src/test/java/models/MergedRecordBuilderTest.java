@@ -0,0 +1,83 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MergedRecordBuilderTest {
+    private static MergedRecord record() {
+        Map<String, Long> materials = new HashMap<>();
+        materials.put("Wood", 2L);
+        materials.put("Glass", 1L);
+        return MergedRecord.builder()
+                .setID(1001)
+                .setSiteName("site")
+                .setAddress("1 Main St")
+                .setPointOfContact(new MergedRecord.PointOfContact("name", "Engineer", "555"))
+                .setRequiredMaterials(materials)
+                .setRequiredEquipment(EnumSet.of(HeavyEquipment.Excavator, HeavyEquipment.Grader))
+                .build();
+    }
+
+    @Test
+    void applyCarriesTheCollectionsOfTheOtherBuilder() {
+        MergedRecord record = record();
+        MergedRecord applied = MergedRecord.builder().apply(record.mutate()).build();
+
+        assertEquals(record, applied);
+        assertEquals(Map.of("Wood", 2L, "Glass", 1L), applied.requiredMaterials());
+        assertEquals(EnumSet.of(HeavyEquipment.Excavator, HeavyEquipment.Grader), applied.requiredEquipment());
+    }
+
+    @Test
+    void applyKeepsFieldsTheOtherBuilderDoesNotSet() {
+        MergedRecord record = record();
+        MergedRecord applied = record.mutate()
+                .apply(MergedRecord.builder().setAddress("2 Main St"))
+                .build();
+
+        assertEquals("2 Main St", applied.address());
+        assertEquals(record.requiredMaterials(), applied.requiredMaterials());
+        assertEquals(record.requiredEquipment(), applied.requiredEquipment());
+    }
+
+    @Test
+    void mutateSharesTheCollectionsOfTheRecord() {
+        MergedRecord record = record();
+        MergedRecord rebuilt = record.mutate().build();
+
+        assertSame(record.requiredMaterials(), rebuilt.requiredMaterials());
+        assertSame(record.requiredEquipment(), rebuilt.requiredEquipment());
+    }
+
+    @Test
+    void buildMovesTheMaterialsMapInsteadOfCopyingIt() {
+        Map<String, Long> materials = new HashMap<>(Map.of("Wood", 1L));
+        MergedRecord record = record().mutate().setRequiredMaterials(materials).build();
+
+        assertThrows(UnsupportedOperationException.class, () -> record.requiredMaterials().put("Brass", 1L));
+        //the record is a read-only view of the map the builder owned, so nothing was copied
+        materials.put("Brass", 3L);
+        assertEquals(3L, record.requiredMaterials().get("Brass"));
+    }
+
+    @Test
+    void buildDefaultsMissingCollectionsToSharedEmptyOnes() {
+        MergedRecord record = record().mutate()
+                .setRequiredMaterials(null)
+                .apply(MergedRecord.builder())
+                .build();
+        MergedRecord empty = MergedRecord.builder().setID(1).setSiteName("s").setAddress("a").build();
+
+        assertSame(Collections.emptyMap(), empty.requiredMaterials());
+        assertSame(EquipmentSet.NONE, empty.requiredEquipment());
+        assertEquals(Map.of(), record.requiredMaterials());
+    }
+}